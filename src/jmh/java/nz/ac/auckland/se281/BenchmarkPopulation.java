@@ -0,0 +1,143 @@
+package nz.ac.auckland.se281;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import nz.ac.auckland.se281.Types.ActivityType;
+import nz.ac.auckland.se281.Types.Location;
+
+/**
+ * Builds synthetic operator management systems for the benchmarks. A population of a given size has
+ * {@code size} reviews spread over {@code size / 2} activities offered by {@code size / 10}
+ * operators, cycling through every location, activity type and review type. All IDs are derived the
+ * same way the system derives them, so benchmarks can address any entity directly.
+ */
+public class BenchmarkPopulation {
+
+  private static final Location[] LOCATIONS = Location.values();
+  private static final ActivityType[] TYPES = ActivityType.values();
+
+  // Every operator name starts with these words, so all operator initials are "BOX".
+  private static final String OPERATOR_INITIALS = "BOX";
+
+  private final OperatorManagementSystem system = new OperatorManagementSystem();
+  private final int operatorCount;
+  private final int activityCount;
+  private final int reviewCount;
+
+  /**
+   * Creates and fills a population.
+   *
+   * @param size the number of reviews; operators and activities are derived from it
+   */
+  public BenchmarkPopulation(int size) {
+    this.reviewCount = size;
+    this.activityCount = Math.max(LOCATIONS.length, size / 2);
+    this.operatorCount = Math.max(LOCATIONS.length, size / 10);
+
+    for (int i = 0; i < operatorCount; i++) {
+      system.createOperator(operatorName(i), LOCATIONS[i % LOCATIONS.length].name());
+    }
+    for (int i = 0; i < activityCount; i++) {
+      system.createActivity(
+          "Bench Activity " + i, TYPES[i % TYPES.length].getName(), operatorId(i % operatorCount));
+    }
+    for (int i = 0; i < reviewCount; i++) {
+      String activityId = activityId(i % activityCount);
+      switch (i % 3) {
+        case 0:
+          system.addPublicReview(activityId, new String[] {"Alice", "n", rating(i), "Fun"});
+          break;
+        case 1:
+          system.addPrivateReview(
+              activityId, new String[] {"Bob", "bob@example.com", rating(i), "Cold", "y"});
+          break;
+        default:
+          system.addExpertReview(activityId, new String[] {"Carol", rating(i), "Worth it", "y"});
+          break;
+      }
+    }
+  }
+
+  /**
+   * Sends all system output to a sink that drops it and points {@link System#out} at a stream that
+   * drops everything, so the benchmarks measure the system rather than the terminal.
+   */
+  public static void silenceOutput() {
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    Output.setSink(new DiscardingSink());
+  }
+
+  public OperatorManagementSystem getSystem() {
+    return system;
+  }
+
+  public int getOperatorCount() {
+    return operatorCount;
+  }
+
+  public int getActivityCount() {
+    return activityCount;
+  }
+
+  public int getReviewCount() {
+    return reviewCount;
+  }
+
+  /**
+   * Returns the name of the operator at a creation position.
+   *
+   * @param index the creation position
+   * @return the operator name
+   */
+  public static String operatorName(int index) {
+    return "Bench Operator X" + index;
+  }
+
+  /**
+   * Returns the ID of the operator at a creation position.
+   *
+   * @param index the creation position
+   * @return the operator ID
+   */
+  public String operatorId(int index) {
+    Location loc = LOCATIONS[index % LOCATIONS.length];
+    return IdGenerator.operatorId(
+        OPERATOR_INITIALS, loc.getLocationAbbreviation(), index / LOCATIONS.length + 1);
+  }
+
+  /**
+   * Returns the ID of the activity at a creation position.
+   *
+   * @param index the creation position
+   * @return the activity ID
+   */
+  public String activityId(int index) {
+    return IdGenerator.activityId(operatorId(index % operatorCount), index / operatorCount + 1);
+  }
+
+  /**
+   * Returns the ID of the review at a creation position.
+   *
+   * @param index the creation position
+   * @return the review ID
+   */
+  public String reviewId(int index) {
+    return IdGenerator.reviewId(activityId(index % activityCount), index / activityCount + 1);
+  }
+
+  private static String rating(int index) {
+    return String.valueOf(index % 5 + 1);
+  }
+
+  /** Output sink that drops everything written to it. */
+  private static class DiscardingSink implements OutputSink {
+    @Override
+    public void print(String text) {}
+
+    @Override
+    public void println(String line) {}
+
+    @Override
+    public void flush() {}
+  }
+}
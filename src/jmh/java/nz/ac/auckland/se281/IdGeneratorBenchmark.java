@@ -0,0 +1,60 @@
+package nz.ac.auckland.se281;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares {@link IdGenerator} with the {@code String.format} calls it replaced. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGeneratorBenchmark {
+
+  private int sequence;
+
+  // Cycles through one- to four-digit sequence numbers.
+  private int nextSequence() {
+    sequence = sequence % 1500 + 1;
+    return sequence;
+  }
+
+  @Benchmark
+  public String operatorIdFormat() {
+    return String.format("%s-%s-%03d", "WACT", "AKL", nextSequence());
+  }
+
+  @Benchmark
+  public String operatorIdGenerator() {
+    return IdGenerator.operatorId("WACT", "AKL", nextSequence());
+  }
+
+  @Benchmark
+  public String activityIdFormat() {
+    return String.format("%s-%03d", "WACT-AKL-001", nextSequence());
+  }
+
+  @Benchmark
+  public String activityIdGenerator() {
+    return IdGenerator.activityId("WACT-AKL-001", nextSequence());
+  }
+
+  @Benchmark
+  public String reviewIdFormat() {
+    return String.format("%s-R%d", "WACT-AKL-001-001", nextSequence());
+  }
+
+  @Benchmark
+  public String reviewIdGenerator() {
+    return IdGenerator.reviewId("WACT-AKL-001-001", nextSequence());
+  }
+}
@@ -0,0 +1,146 @@
+package nz.ac.auckland.se281;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import nz.ac.auckland.se281.Types.ActivityType;
+import nz.ac.auckland.se281.Types.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures every public command of {@link OperatorManagementSystem} against populations of 1k, 100k
+ * and 1M reviews (see {@link BenchmarkPopulation}). Output is discarded. Commands that create
+ * entities keep adding to the population during a run, which is small compared to its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class OperatorManagementSystemBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int size;
+
+  private BenchmarkPopulation population;
+  private OperatorManagementSystem system;
+  private int cursor;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    BenchmarkPopulation.silenceOutput();
+    population = new BenchmarkPopulation(size);
+    system = population.getSystem();
+  }
+
+  // Moves through the population so consecutive invocations touch different entities.
+  private int next(int bound) {
+    cursor = (cursor + 7919) % bound;
+    return cursor;
+  }
+
+  @Benchmark
+  public void searchOperatorsKeyword() {
+    system.searchOperators("operator x" + next(population.getOperatorCount()));
+  }
+
+  @Benchmark
+  public void searchOperatorsLocation() {
+    system.searchOperators("nelson");
+  }
+
+  @Benchmark
+  public void createOperator() {
+    system.createOperator("Fresh Operator " + cursor++, "AKL");
+  }
+
+  @Benchmark
+  public void createOperatorDuplicate() {
+    system.createOperator(BenchmarkPopulation.operatorName(8), "AKL");
+  }
+
+  @Benchmark
+  public void viewActivities() {
+    system.viewActivities(population.operatorId(next(population.getOperatorCount())));
+  }
+
+  @Benchmark
+  public void createActivity() {
+    system.createActivity(
+        "Fresh Activity", "Food", population.operatorId(next(population.getOperatorCount())));
+  }
+
+  @Benchmark
+  public void searchActivitiesKeyword() {
+    system.searchActivities("activity " + next(population.getActivityCount()));
+  }
+
+  @Benchmark
+  public void searchActivitiesType() {
+    system.searchActivities("wildlife");
+  }
+
+  @Benchmark
+  public void addPublicReview() {
+    system.addPublicReview(
+        population.activityId(next(population.getActivityCount())),
+        new String[] {"Dave", "y", "4", "Great"});
+  }
+
+  @Benchmark
+  public void addPrivateReview() {
+    system.addPrivateReview(
+        population.activityId(next(population.getActivityCount())),
+        new String[] {"Erin", "erin@example.com", "2", "Late", "n"});
+  }
+
+  @Benchmark
+  public void addExpertReview() {
+    system.addExpertReview(
+        population.activityId(next(population.getActivityCount())),
+        new String[] {"Frank", "5", "Superb", "y"});
+  }
+
+  @Benchmark
+  public void displayReviews() {
+    system.displayReviews(population.activityId(next(population.getActivityCount())));
+  }
+
+  @Benchmark
+  public void endorseReview() {
+    system.endorseReview(population.reviewId(next(population.getReviewCount())));
+  }
+
+  @Benchmark
+  public void resolveReview() {
+    system.resolveReview(population.reviewId(next(population.getReviewCount())), "Sorted");
+  }
+
+  @Benchmark
+  public void uploadReviewImage() {
+    system.uploadReviewImage(population.reviewId(next(population.getReviewCount())), "pic.png");
+  }
+
+  @Benchmark
+  public void displayTopActivities() {
+    system.displayTopActivities();
+  }
+
+  @Benchmark
+  public List<ActivityLeaderboard.Entry> getTopActivities() {
+    return system.getTopActivities(Location.WLG, ActivityType.FOOD, 10);
+  }
+}
@@ -0,0 +1,244 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import nz.ac.auckland.se281.Types.ActivityType;
+import nz.ac.auckland.se281.Types.Location;
+import nz.ac.auckland.se281.Types.ReviewType;
+
+/**
+ * Ranks the reviewed activities of each location, and of each activity type within a location, by
+ * the average of their public and expert ratings. Rankings are updated whenever an activity
+ * receives a review, so the top activities of a location can be read without looking at any other
+ * activity. Ties are broken in favour of the activity that comes first in listing order.
+ *
+ * <p>The leaderboard is safe for concurrent use, and reporting a changed activity never waits. The
+ * activity is queued for its location, and whichever thread holds or next takes that location's
+ * lock re-ranks everything queued, reading each activity's latest ratings. Queries drain the queue
+ * before reading, so a thread always sees the effect of its own reviews.
+ */
+public class ActivityLeaderboard {
+
+  /** Review types that count towards an activity's ranking. */
+  private static final ReviewType[] RANKED_TYPES = {ReviewType.PUBLIC, ReviewType.EXPERT};
+
+  /** Orders entries from the highest average rating down, then by listing order. */
+  private static final Comparator<Entry> RANKING_ORDER =
+      Comparator.comparingDouble((Entry entry) -> entry.average)
+          .reversed()
+          .thenComparingLong(entry -> entry.listingKey);
+
+  /** Rankings of the reviewed activities in each location. */
+  private Map<Location, LocationRankings> rankingsByLocation = new EnumMap<>(Location.class);
+
+  /** Current entry of every activity known to the leaderboard. */
+  private Map<StandardActivity, Entry> entries = new ConcurrentHashMap<>();
+
+  /** Constructs an empty leaderboard with a ranking for every location and activity type. */
+  public ActivityLeaderboard() {
+    // Every ranking exists up front, so concurrent updates never add to the map above
+    for (Location location : Location.values()) {
+      rankingsByLocation.put(location, new LocationRankings());
+    }
+  }
+
+  /**
+   * Registers a newly created activity. It is not ranked until it has a public or expert review.
+   *
+   * @param activity the activity to register
+   * @param listingKey the activity's listing key, used to break ties
+   */
+  public void addActivity(StandardActivity activity, long listingKey) {
+    entries.putIfAbsent(activity, new Entry(activity, listingKey, 0.0, false));
+  }
+
+  /**
+   * Re-ranks an activity after one of its reviews has been added. If another thread is re-ranking
+   * activities in the same location, this activity is left for that thread instead of waiting.
+   *
+   * @param activity the activity whose ratings changed
+   */
+  public void update(StandardActivity activity) {
+    LocationRankings rankings = rankingsByLocation.get(activity.getOperator().getLocation());
+
+    // An activity that is already queued will be re-ranked from its latest ratings anyway
+    if (rankings.queued.add(activity)) {
+      rankings.pending.add(activity);
+    }
+    rankings.drain();
+  }
+
+  /**
+   * Returns the highest ranked activity in a location.
+   *
+   * @param location the location to look in
+   * @return the top entry, or null if no activity in the location has been reviewed
+   */
+  public Entry top(Location location) {
+    LocationRankings rankings = rankingsByLocation.get(location);
+    rankings.lockForReading();
+    try {
+      return rankings.all.isEmpty() ? null : rankings.all.first();
+    } finally {
+      rankings.unlock();
+    }
+  }
+
+  /**
+   * Returns the highest ranked activities in a location, optionally restricted to one activity
+   * type. Only the returned entries are visited, so the cost is proportional to the limit.
+   *
+   * @param location the location to look in
+   * @param type the activity type to restrict to, or null for all types
+   * @param limit the maximum number of entries to return
+   * @return up to {@code limit} entries, best first
+   */
+  public List<Entry> top(Location location, ActivityType type, int limit) {
+    if (limit <= 0) {
+      return Collections.emptyList();
+    }
+
+    LocationRankings rankings = rankingsByLocation.get(location);
+    TreeSet<Entry> ranking = type == null ? rankings.all : rankings.byType.get(type);
+    rankings.lockForReading();
+    try {
+      // Walk the ranking from the top until enough entries have been collected
+      List<Entry> top = new ArrayList<>(Math.min(limit, ranking.size()));
+      for (Entry entry : ranking) {
+        if (top.size() == limit) {
+          break;
+        }
+        top.add(entry);
+      }
+      return top;
+    } finally {
+      rankings.unlock();
+    }
+  }
+
+  /**
+   * Replaces an activity's entry with one built from its current ratings. The caller must hold the
+   * lock of the activity's location.
+   *
+   * @param rankings the rankings of the activity's location
+   * @param activity the activity to re-rank
+   */
+  private void rerank(LocationRankings rankings, StandardActivity activity) {
+    TreeSet<Entry> typeRanking = rankings.byType.get(activity.getType());
+
+    // Take out the stale entry before its rating is replaced
+    Entry previous = entries.get(activity);
+    if (previous.ranked) {
+      rankings.all.remove(previous);
+      typeRanking.remove(previous);
+    }
+
+    // Only activities with public or expert reviews are ranked
+    boolean ranked = activity.getReviewCount(RANKED_TYPES) > 0;
+    Entry current =
+        new Entry(activity, previous.listingKey, activity.getAverageRating(RANKED_TYPES), ranked);
+    entries.put(activity, current);
+    if (ranked) {
+      rankings.all.add(current);
+      typeRanking.add(current);
+    }
+  }
+
+  /** Rankings of one location, with the lock that guards them and the activities to re-rank. */
+  private class LocationRankings {
+    private final TreeSet<Entry> all = new TreeSet<>(RANKING_ORDER);
+    private final Map<ActivityType, TreeSet<Entry>> byType = new EnumMap<>(ActivityType.class);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Activities whose ratings changed since they were last ranked, in the order reported. */
+    private final Queue<StandardActivity> pending = new ConcurrentLinkedQueue<>();
+
+    /** The activities currently in {@link #pending}, so each is queued at most once. */
+    private final Set<StandardActivity> queued = ConcurrentHashMap.newKeySet();
+
+    private LocationRankings() {
+      for (ActivityType type : ActivityType.values()) {
+        byType.put(type, new TreeSet<>(RANKING_ORDER));
+      }
+    }
+
+    /**
+     * Re-ranks queued activities for as long as there are any and the lock is free. A thread that
+     * finds the lock taken leaves its work to the holder, which checks the queue again once it has
+     * released the lock.
+     */
+    private void drain() {
+      while (!pending.isEmpty() && lock.tryLock()) {
+        try {
+          StandardActivity activity;
+          while ((activity = pending.poll()) != null) {
+            // Unmark the activity before reading its ratings, so later changes queue it again
+            queued.remove(activity);
+            rerank(this, activity);
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+
+    /** Takes the lock with every activity queued so far ranked. */
+    private void lockForReading() {
+      lock.lock();
+      StandardActivity activity;
+      while ((activity = pending.poll()) != null) {
+        queued.remove(activity);
+        rerank(this, activity);
+      }
+    }
+
+    /** Releases the lock, then picks up anything queued while it was held. */
+    private void unlock() {
+      lock.unlock();
+      drain();
+    }
+  }
+
+  /** An activity together with the rating it is currently ranked by. */
+  public static class Entry {
+    private final StandardActivity activity;
+    private final long listingKey;
+    private final double average;
+    private final boolean ranked;
+
+    private Entry(StandardActivity activity, long listingKey, double average, boolean ranked) {
+      this.activity = activity;
+      this.listingKey = listingKey;
+      this.average = average;
+      this.ranked = ranked;
+    }
+
+    /**
+     * Returns the ranked activity.
+     *
+     * @return the activity
+     */
+    public StandardActivity getActivity() {
+      return activity;
+    }
+
+    /**
+     * Returns the average public and expert rating the activity is ranked by.
+     *
+     * @return the average rating
+     */
+    public double getAverage() {
+      return average;
+    }
+  }
+}
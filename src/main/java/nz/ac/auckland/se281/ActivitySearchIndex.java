@@ -0,0 +1,128 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import nz.ac.auckland.se281.Types.ActivityType;
+import nz.ac.auckland.se281.Types.Location;
+
+/**
+ * Incrementally maintained search index over activities. Activity names are held in an n-gram
+ * index, and activities are grouped by type and by the location of their operator, so type and
+ * location keywords resolve to precomputed sets. Results are returned in listing order: by operator
+ * creation order, then by the order of activities within each operator.
+ */
+public class ActivitySearchIndex {
+
+  /** Substring index over the lowercase activity names. */
+  private NgramIndex names = new NgramIndex();
+
+  /** Indexed activities, positioned by document ID. */
+  private List<StandardActivity> activities = new ArrayList<>();
+
+  /** Creation position of the operator offering each activity, positioned by document ID. */
+  private int[] operatorPositions = new int[16];
+
+  /** Creation position of every operator known to the index. */
+  private Map<Operator, Integer> positionsByOperator = new HashMap<>();
+
+  /** Document IDs of the activities of each type. */
+  private Map<ActivityType, BitSet> activitiesByType = new EnumMap<>(ActivityType.class);
+
+  /** Document IDs of the activities offered in each location. */
+  private Map<Location, BitSet> activitiesByLocation = new EnumMap<>(Location.class);
+
+  /**
+   * Registers an operator with the index. Operators must be registered in creation order, before
+   * any of their activities are added.
+   *
+   * @param operator the operator to register
+   */
+  public void addOperator(Operator operator) {
+    positionsByOperator.putIfAbsent(operator, positionsByOperator.size());
+  }
+
+  /**
+   * Adds an activity to the index.
+   *
+   * @param activity the activity to index
+   * @return the activity's listing key; listing keys sort in the same order as search results
+   */
+  public long addActivity(StandardActivity activity) {
+    int docId = names.add(activity.getName().toLowerCase());
+    activities.add(activity);
+
+    // Remember which operator the activity belongs to so results can be put in listing order
+    if (docId == operatorPositions.length) {
+      operatorPositions = Arrays.copyOf(operatorPositions, docId * 2);
+    }
+    operatorPositions[docId] = positionsByOperator.get(activity.getOperator());
+
+    // Group the activity by type and location
+    activitiesByType.computeIfAbsent(activity.getType(), type -> new BitSet()).set(docId);
+    activitiesByLocation
+        .computeIfAbsent(activity.getOperator().getLocation(), loc -> new BitSet())
+        .set(docId);
+
+    return listingKey(docId);
+  }
+
+  /**
+   * Finds the activities whose name, type, location name or location abbreviation contains the
+   * keyword.
+   *
+   * @param keyword the trimmed, lowercase search term
+   * @return the matching activities in listing order
+   */
+  public List<StandardActivity> search(String keyword) {
+    BitSet matches = new BitSet(activities.size());
+
+    // Match the keyword against activity names
+    names.collectMatches(keyword, matches);
+
+    // Include every activity of a type whose name matches
+    for (Map.Entry<ActivityType, BitSet> entry : activitiesByType.entrySet()) {
+      if (entry.getKey().toString().toLowerCase().contains(keyword)) {
+        matches.or(entry.getValue());
+      }
+    }
+
+    // Include every activity offered in a location whose name or abbreviation matches
+    for (Map.Entry<Location, BitSet> entry : activitiesByLocation.entrySet()) {
+      Location loc = entry.getKey();
+      if (loc.getFullName().toLowerCase().contains(keyword)
+          || loc.getLocationAbbreviation().toLowerCase().contains(keyword)) {
+        matches.or(entry.getValue());
+      }
+    }
+
+    // Order by operator position, then by creation order within the operator
+    long[] keys = new long[matches.cardinality()];
+    int count = 0;
+    for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+      keys[count++] = listingKey(i);
+    }
+    Arrays.sort(keys);
+
+    List<StandardActivity> results = new ArrayList<>(keys.length);
+    for (long key : keys) {
+      results.add(activities.get((int) key));
+    }
+    return results;
+  }
+
+  /**
+   * Builds the listing key of an activity from its operator's position and its document ID. Within
+   * one operator, document IDs follow the order the activities were created in.
+   *
+   * @param docId the document ID of the activity
+   * @return the listing key
+   */
+  private long listingKey(int docId) {
+    return ((long) operatorPositions[docId] << 32) | docId;
+  }
+}
@@ -0,0 +1,164 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free list that many threads can append to at once. Appending is split into two steps: a
+ * writer first reserves the next index with a single atomic increment, then publishes its element
+ * into that slot. Readers only ever see the published prefix, the longest run of filled slots from
+ * the start, so an element never becomes visible before every element reserved ahead of it.
+ *
+ * <p>Slots live in segments that double in size, so the list grows without ever copying or locking.
+ * Whichever thread fills the slot at the end of the prefix advances it, helping past any slots that
+ * slower writers filled in the meantime.
+ *
+ * @param <E> the type of the elements
+ */
+public class AppendOnlyList<E> {
+
+  /** Number of slots in the first segment; every later segment is twice the size of the last. */
+  private static final int FIRST_SEGMENT_SIZE = 8;
+
+  /** Enough segments for just over two billion elements. */
+  private static final int MAX_SEGMENTS = 28;
+
+  private final AtomicReferenceArray<AtomicReferenceArray<E>> segments =
+      new AtomicReferenceArray<>(MAX_SEGMENTS);
+
+  /** Number of indexes handed out so far. */
+  private final AtomicInteger reserved = new AtomicInteger();
+
+  /** Length of the prefix of filled slots that readers may see. */
+  private final AtomicInteger published = new AtomicInteger();
+
+  /**
+   * Reserves the next index. The caller must publish an element into it, or the published prefix
+   * will never grow past it.
+   *
+   * @return the reserved index
+   */
+  public int reserve() {
+    return reserved.getAndIncrement();
+  }
+
+  /**
+   * Fills a reserved slot and extends the published prefix as far as the filled slots reach.
+   *
+   * @param index an index returned by {@link #reserve()}
+   * @param element the element to publish
+   */
+  public void publish(int index, E element) {
+    segmentFor(index).set(offsetOf(index), element);
+
+    // Advance the prefix over this slot and any that were filled out of order behind it
+    while (true) {
+      int length = published.get();
+      if (length >= reserved.get() || slot(length) == null) {
+        return;
+      }
+      published.compareAndSet(length, length + 1);
+    }
+  }
+
+  /**
+   * Appends an element at the next index.
+   *
+   * @param element the element to append
+   */
+  public void add(E element) {
+    publish(reserve(), element);
+  }
+
+  /**
+   * Returns a published element without copying the list.
+   *
+   * @param index the index of the element, less than {@link #size()}
+   * @return the element
+   * @throws IndexOutOfBoundsException if the index is not in the published prefix
+   */
+  public E get(int index) {
+    if (index < 0 || index >= published.get()) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return slot(index);
+  }
+
+  /**
+   * Returns the number of published elements.
+   *
+   * @return the length of the published prefix
+   */
+  public int size() {
+    return published.get();
+  }
+
+  /**
+   * Returns the published elements in index order. Elements published after the call starts may
+   * or may not be included, but the result is always a prefix of the list.
+   *
+   * @return a read-only copy of the published prefix
+   */
+  public List<E> snapshot() {
+    int length = published.get();
+    List<E> elements = new ArrayList<>(length);
+    for (int i = 0; i < length; i++) {
+      elements.add(slot(i));
+    }
+    return Collections.unmodifiableList(elements);
+  }
+
+  /**
+   * Returns the element in a slot, or null if it has not been filled.
+   *
+   * @param index the slot index
+   * @return the element, or null
+   */
+  private E slot(int index) {
+    AtomicReferenceArray<E> segment = segments.get(segmentOf(index));
+    return segment == null ? null : segment.get(offsetOf(index));
+  }
+
+  /**
+   * Returns the segment holding an index, creating it if no thread has yet.
+   *
+   * @param index the slot index
+   * @return the segment
+   */
+  private AtomicReferenceArray<E> segmentFor(int index) {
+    int segmentIndex = segmentOf(index);
+    AtomicReferenceArray<E> segment = segments.get(segmentIndex);
+    if (segment == null) {
+      // Only one new segment wins; the others are discarded
+      segments.compareAndSet(
+          segmentIndex, null, new AtomicReferenceArray<>(FIRST_SEGMENT_SIZE << segmentIndex));
+      segment = segments.get(segmentIndex);
+    }
+    return segment;
+  }
+
+  /**
+   * Returns the segment an index falls in. Segment {@code k} starts at index {@code
+   * FIRST_SEGMENT_SIZE * (2^k - 1)}.
+   *
+   * @param index the slot index
+   * @return the segment index
+   */
+  private static int segmentOf(int index) {
+    return 31 - Integer.numberOfLeadingZeros(index / FIRST_SEGMENT_SIZE + 1);
+  }
+
+  /**
+   * Returns the position of an index within its segment.
+   *
+   * @param index the slot index
+   * @return the offset within the segment
+   */
+  private static int offsetOf(int index) {
+    int segmentIndex = segmentOf(index);
+    return index - FIRST_SEGMENT_SIZE * ((1 << segmentIndex) - 1);
+  }
+}
@@ -0,0 +1,128 @@
+package nz.ac.auckland.se281;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the values written by {@link BinaryEncoder} from a buffer that is refilled from a file
+ * channel as it runs dry.
+ */
+class BinaryDecoder {
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+
+  /**
+   * Constructs a decoder that reads from the current position of a channel.
+   *
+   * @param channel the channel to read from
+   * @param bufferSize the size of the buffer in front of the channel
+   */
+  BinaryDecoder(FileChannel channel, int bufferSize) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+    buffer.flip();
+  }
+
+  int readByte() throws IOException {
+    require(1);
+    return buffer.get() & 0xff;
+  }
+
+  boolean readBoolean() throws IOException {
+    return readByte() != 0;
+  }
+
+  int readInt() throws IOException {
+    require(Integer.BYTES);
+    return buffer.getInt();
+  }
+
+  long readLong() throws IOException {
+    require(Long.BYTES);
+    return buffer.getLong();
+  }
+
+  int readVarInt() throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = readByte();
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable-length integer");
+  }
+
+  String readString() throws IOException {
+    int length = readVarInt();
+
+    // Decode straight out of the buffer when the whole string fits in it
+    if (length <= buffer.capacity()) {
+      require(length);
+      String value =
+          new String(
+              buffer.array(),
+              buffer.arrayOffset() + buffer.position(),
+              length,
+              StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+      return value;
+    }
+
+    // Longer strings are gathered piece by piece
+    byte[] bytes = new byte[length];
+    int offset = 0;
+    while (offset < length) {
+      require(1);
+      int count = Math.min(buffer.remaining(), length - offset);
+      buffer.get(bytes, offset, count);
+      offset += count;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns whether every byte of the channel has been read.
+   *
+   * @return true if there is nothing left to read
+   * @throws IOException if the channel cannot be read
+   */
+  boolean atEnd() throws IOException {
+    if (buffer.hasRemaining()) {
+      return false;
+    }
+    buffer.clear();
+    int read = channel.read(buffer);
+    buffer.flip();
+    return read < 0;
+  }
+
+  /**
+   * Returns the channel offset of the next byte to be read.
+   *
+   * @return the read position
+   * @throws IOException if the channel position cannot be read
+   */
+  long position() throws IOException {
+    return channel.position() - buffer.remaining();
+  }
+
+  private void require(int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return;
+    }
+
+    // Keep the unread bytes and top the buffer up from the channel
+    buffer.compact();
+    while (buffer.position() < bytes) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("Unexpected end of file");
+      }
+    }
+    buffer.flip();
+  }
+}
@@ -0,0 +1,112 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes primitive values into a buffer that is drained to a file channel whenever it fills up.
+ * Counts and string lengths are variable-length integers and strings are UTF-8. Used by both the
+ * snapshot and the write-ahead log.
+ */
+class BinaryEncoder {
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+
+  /**
+   * Constructs an encoder that writes to the current position of a channel.
+   *
+   * @param channel the channel to write to
+   * @param bufferSize the size of the buffer in front of the channel
+   */
+  BinaryEncoder(FileChannel channel, int bufferSize) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  void writeByte(int value) throws IOException {
+    ensureRemaining(1);
+    buffer.put((byte) value);
+  }
+
+  void writeBoolean(boolean value) throws IOException {
+    writeByte(value ? 1 : 0);
+  }
+
+  void writeInt(int value) throws IOException {
+    ensureRemaining(Integer.BYTES);
+    buffer.putInt(value);
+  }
+
+  void writeLong(long value) throws IOException {
+    ensureRemaining(Long.BYTES);
+    buffer.putLong(value);
+  }
+
+  void writeVarInt(int value) throws IOException {
+    // Seven bits per byte, with the high bit set on every byte but the last
+    ensureRemaining(5);
+    while ((value & ~0x7f) != 0) {
+      buffer.put((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  void writeString(String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(bytes.length);
+
+    // Strings longer than the buffer are written in buffer-sized pieces
+    int offset = 0;
+    while (offset < bytes.length) {
+      ensureRemaining(1);
+      int length = Math.min(buffer.remaining(), bytes.length - offset);
+      buffer.put(bytes, offset, length);
+      offset += length;
+    }
+  }
+
+  /**
+   * Returns the number of bytes written so far that are still held in the buffer.
+   *
+   * @return the number of unflushed bytes
+   */
+  int pending() {
+    return buffer.position();
+  }
+
+  /**
+   * Drops buffered bytes that have not been written to the channel yet.
+   *
+   * @param keep the number of buffered bytes to keep, counted from the oldest
+   */
+  void discard(int keep) {
+    buffer.position(keep);
+  }
+
+  /**
+   * Writes everything held in the buffer to the channel. If the channel fails part way, the bytes
+   * it did not take stay buffered, so the channel's position plus {@link #pending()} still marks
+   * the end of everything written so far.
+   *
+   * @throws IOException if the channel cannot be written
+   */
+  void flush() throws IOException {
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } finally {
+      buffer.compact();
+    }
+  }
+
+  private void ensureRemaining(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush();
+    }
+  }
+}
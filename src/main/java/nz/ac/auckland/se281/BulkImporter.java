@@ -0,0 +1,565 @@
+package nz.ac.auckland.se281;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import nz.ac.auckland.se281.Main.Command;
+import nz.ac.auckland.se281.Types.Location;
+
+/**
+ * Loads operators, activities and reviews into a system from CSV files. Each row is one command
+ * followed by its arguments and then its options, in the order the console prompts for them:
+ *
+ * <pre>
+ * CREATE_OPERATOR,West Auckland Camel Treks,AKL
+ * CREATE_ACTIVITY,Camel Ride,Adventure,WACT-AKL-001
+ * ADD_PUBLIC_REVIEW,WACT-AKL-001-001,Alice,n,5,"Great, would ride again"
+ * ADD_PRIVATE_REVIEW,WACT-AKL-001-001,Bob,bob@example.com,2,Too hot,y
+ * ADD_EXPERT_REVIEW,WACT-AKL-001-001,Carol,4,Well run,y
+ * </pre>
+ *
+ * <p>Fields may be enclosed in double quotes to hold commas, line breaks or doubled quotes. Rows
+ * are validated by exactly the same rules as the commands themselves, and generated IDs follow the
+ * same sequences, so later rows can refer to what earlier rows created. A rejected row is reported
+ * with its line number and the load carries on with the next one.
+ *
+ * <p>Files are streamed, so only the current row is held in memory. Rows are inserted in batches:
+ * with a write-ahead log attached, each batch is forced to disk once instead of once per row.
+ *
+ * <p>Files can also be loaded in parallel. Every ID sequence belongs to a single location:
+ * operators are numbered per location, activities per operator and reviews per activity. Rows are
+ * therefore sharded by the location they name, either directly or through the abbreviation inside
+ * an operator or activity ID, and each location's rows are inserted in file order by a worker of
+ * its own. Every ID comes out exactly as a sequential load would make it. Only the order in which
+ * operators of different locations are listed may differ, and rejections from different locations
+ * may be reported out of order.
+ */
+public class BulkImporter {
+
+  /** Number of rows inserted between syncs of the write-ahead log. */
+  private static final int BATCH_SIZE = 1024;
+
+  /** Size of the buffer each CSV file is read through. */
+  private static final int READ_BUFFER_SIZE = 1 << 16;
+
+  /** Number of rows the reader may get ahead of each location's worker. */
+  private static final int SHARD_QUEUE_CAPACITY = 4096;
+
+  /** Marks the end of the rows of a shard. */
+  private static final Row END_OF_SHARD = new Row(null, null);
+
+  /** Commands that may appear in an import, keyed by name. */
+  private static final Map<String, Command> IMPORTABLE_COMMANDS = new HashMap<>();
+
+  static {
+    for (Command command :
+        new Command[] {
+          Command.CREATE_OPERATOR,
+          Command.CREATE_ACTIVITY,
+          Command.ADD_PUBLIC_REVIEW,
+          Command.ADD_PRIVATE_REVIEW,
+          Command.ADD_EXPERT_REVIEW
+        }) {
+      IMPORTABLE_COMMANDS.put(command.name(), command);
+    }
+  }
+
+  private final OperatorManagementSystem system;
+
+  private final AtomicInteger rows = new AtomicInteger();
+  private final AtomicInteger rejectedRows = new AtomicInteger();
+  private final Map<Command, AtomicInteger> insertedByCommand = new EnumMap<>(Command.class);
+
+  /**
+   * Constructs an importer that loads into a system.
+   *
+   * @param system the system to insert into
+   */
+  public BulkImporter(OperatorManagementSystem system) {
+    this.system = system;
+
+    // Every counter exists up front, so parallel workers never add to the map
+    for (Command command : IMPORTABLE_COMMANDS.values()) {
+      insertedByCommand.put(command, new AtomicInteger());
+    }
+  }
+
+  /**
+   * Imports every row of a CSV file, in order.
+   *
+   * @param csvFile the file to import
+   * @param errors receives a message for each rejected row, naming the file and line
+   * @throws IOException if the file cannot be read or the write-ahead log cannot be written
+   */
+  public void load(Path csvFile, Consumer<String> errors) throws IOException {
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(Files.newInputStream(csvFile), StandardCharsets.UTF_8),
+            READ_BUFFER_SIZE)) {
+      load(reader, csvFile.toString(), errors);
+    }
+  }
+
+  /**
+   * Imports every row read from a stream of CSV text, in order.
+   *
+   * @param reader the CSV text
+   * @param source the name of the input, used in error messages
+   * @param errors receives a message for each rejected row, naming the source and line
+   * @throws IOException if the input cannot be read or the write-ahead log cannot be written
+   */
+  public void load(BufferedReader reader, String source, Consumer<String> errors)
+      throws IOException {
+    CsvRows csv = new CsvRows(reader);
+    WriteAheadLog log = system.getWriteAheadLog();
+    if (log != null) {
+      log.beginBatch();
+    }
+    try {
+      int rowsInBatch = 0;
+      List<String> fields;
+      while ((fields = csv.next()) != null) {
+        // Skip blank rows
+        if (fields.size() == 1 && fields.get(0).isBlank()) {
+          continue;
+        }
+
+        rows.incrementAndGet();
+        importRow(new Row(fields, source + ":" + csv.getRowLine()), errors);
+
+        // Make the finished batch durable before moving on
+        if (++rowsInBatch == BATCH_SIZE && log != null) {
+          log.endBatch();
+          log.beginBatch();
+          rowsInBatch = 0;
+        }
+      }
+    } finally {
+      if (log != null) {
+        log.endBatch();
+      }
+    }
+  }
+
+  /**
+   * Imports every row of a CSV file with one worker per location. The IDs generated are the same
+   * as those of {@link #load(Path, Consumer)}.
+   *
+   * @param csvFile the file to import
+   * @param errors receives a message for each rejected row, naming the file and line; it is called
+   *     from several threads at once
+   * @throws IOException if the file cannot be read or the write-ahead log cannot be written
+   */
+  public void loadParallel(Path csvFile, Consumer<String> errors) throws IOException {
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(Files.newInputStream(csvFile), StandardCharsets.UTF_8),
+            READ_BUFFER_SIZE)) {
+      loadParallel(reader, csvFile.toString(), errors);
+    }
+  }
+
+  /**
+   * Imports every row read from a stream of CSV text with one worker per location. The reading
+   * thread parses the rows and hands each to the worker of its location.
+   *
+   * @param reader the CSV text
+   * @param source the name of the input, used in error messages
+   * @param errors receives a message for each rejected row, naming the source and line; it is
+   *     called from several threads at once
+   * @throws IOException if the input cannot be read or the write-ahead log cannot be written
+   */
+  public void loadParallel(BufferedReader reader, String source, Consumer<String> errors)
+      throws IOException {
+    Location[] locations = Location.values();
+    List<BlockingQueue<Row>> shards = new ArrayList<>(locations.length);
+    AtomicReference<Exception> failure = new AtomicReference<>();
+    ExecutorService workers = Executors.newFixedThreadPool(locations.length);
+
+    try {
+      for (int i = 0; i < locations.length; i++) {
+        BlockingQueue<Row> shard = new ArrayBlockingQueue<>(SHARD_QUEUE_CAPACITY);
+        shards.add(shard);
+        workers.execute(() -> importShard(shard, errors, failure));
+      }
+
+      CsvRows csv = new CsvRows(reader);
+      List<String> fields;
+      while (failure.get() == null && (fields = csv.next()) != null) {
+        // Skip blank rows
+        if (fields.size() == 1 && fields.get(0).isBlank()) {
+          continue;
+        }
+
+        rows.incrementAndGet();
+        Row row = new Row(fields, source + ":" + csv.getRowLine());
+        Location location = locationOf(fields);
+        if (location == null) {
+          // A row that names no valid location is rejected whenever it runs
+          importRow(row, errors);
+        } else {
+          shards.get(location.ordinal()).put(row);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while loading " + source);
+    } finally {
+      finishShards(shards, workers);
+    }
+
+    // Report the first failure of any worker
+    Exception workerFailure = failure.get();
+    if (workerFailure instanceof IOException) {
+      throw (IOException) workerFailure;
+    } else if (workerFailure != null) {
+      throw (RuntimeException) workerFailure;
+    }
+  }
+
+  /**
+   * Returns the number of non-blank rows read so far.
+   *
+   * @return the row count
+   */
+  public int getRows() {
+    return rows.get();
+  }
+
+  /**
+   * Returns the number of rows rejected so far.
+   *
+   * @return the rejected row count
+   */
+  public int getRejectedRows() {
+    return rejectedRows.get();
+  }
+
+  /**
+   * Returns the number of rows of one command that were inserted so far.
+   *
+   * @param command an importable command
+   * @return the inserted row count
+   */
+  public int getInserted(Command command) {
+    AtomicInteger inserted = insertedByCommand.get(command);
+    return inserted == null ? 0 : inserted.get();
+  }
+
+  /**
+   * Inserts the rows of one location in order until the end of the shard. After any worker fails
+   * the remaining rows are only drained, so the reader is never left blocked on a full queue.
+   *
+   * @param shard the rows of the location
+   * @param errors receives a message for each rejected row
+   * @param failure holds the first failure of any worker
+   */
+  private void importShard(
+      BlockingQueue<Row> shard, Consumer<String> errors, AtomicReference<Exception> failure) {
+    WriteAheadLog log = system.getWriteAheadLog();
+    if (log != null) {
+      log.beginBatch();
+    }
+    try {
+      int rowsInBatch = 0;
+      Row row;
+      while ((row = shard.take()) != END_OF_SHARD) {
+        if (failure.get() != null) {
+          continue;
+        }
+
+        try {
+          importRow(row, errors);
+
+          // Make the finished batch durable before moving on
+          if (++rowsInBatch == BATCH_SIZE && log != null) {
+            log.endBatch();
+            log.beginBatch();
+            rowsInBatch = 0;
+          }
+        } catch (IOException | RuntimeException e) {
+          failure.compareAndSet(null, e);
+        }
+      }
+    } catch (InterruptedException e) {
+      failure.compareAndSet(null, new InterruptedIOException("Interrupted while loading"));
+    } finally {
+      if (log != null) {
+        try {
+          log.endBatch();
+        } catch (IOException e) {
+          failure.compareAndSet(null, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Ends every shard and waits for the workers to insert what is left of them.
+   *
+   * @param shards the shards to end
+   * @param workers the workers draining them
+   * @throws InterruptedIOException if the thread is interrupted while waiting
+   */
+  private static void finishShards(List<BlockingQueue<Row>> shards, ExecutorService workers)
+      throws InterruptedIOException {
+    try {
+      for (BlockingQueue<Row> shard : shards) {
+        shard.put(END_OF_SHARD);
+      }
+      workers.shutdown();
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      workers.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while finishing the load");
+    }
+  }
+
+  /**
+   * Returns the location whose ID sequences a row uses: the location of a new operator, or the one
+   * abbreviated in the operator or activity ID the row refers to.
+   *
+   * @param fields the fields of the row
+   * @return the location, or null if the row names no valid location
+   */
+  private static Location locationOf(List<String> fields) {
+    Command command =
+        IMPORTABLE_COMMANDS.get(fields.get(0).trim().toUpperCase().replace('-', '_'));
+    if (command == null || fields.size() != 1 + command.getNumArgs() + command.getNumOptions()) {
+      return null;
+    }
+
+    switch (command) {
+      case CREATE_OPERATOR:
+        return Location.fromString(fields.get(2));
+      case CREATE_ACTIVITY:
+        // Operator IDs end in the location abbreviation and the operator's number
+        return abbreviatedLocation(fields.get(3), 2);
+      default:
+        // Activity IDs append the activity's number to the operator ID
+        return abbreviatedLocation(fields.get(1), 3);
+    }
+  }
+
+  /**
+   * Reads the location abbreviation out of an ID. Counting from the end works even when the
+   * initials at the start of an operator ID contain dashes.
+   *
+   * @param id an operator or activity ID
+   * @param partFromEnd the position of the abbreviation, counting dash-separated parts from the end
+   * @return the location, or null if the ID has no valid abbreviation there
+   */
+  private static Location abbreviatedLocation(String id, int partFromEnd) {
+    String[] parts = id.trim().split("-", -1);
+    if (parts.length < partFromEnd) {
+      return null;
+    }
+    return Location.fromString(parts[parts.length - partFromEnd]);
+  }
+
+  /**
+   * Inserts one row, counting it and reporting it if it is rejected.
+   *
+   * @param row the row to insert
+   * @param errors receives a message naming the row if it is rejected
+   */
+  private void importRow(Row row, Consumer<String> errors) {
+    boolean[] reported = new boolean[1];
+    Consumer<String> rejected =
+        message -> {
+          reported[0] = true;
+          errors.accept(row.origin + ": " + message);
+        };
+    if (!importRow(row.fields, rejected)) {
+      rejectedRows.incrementAndGet();
+
+      // Every rejected row is reported, even by a check that gives no reason of its own
+      if (!reported[0]) {
+        rejected.accept("Row not imported.");
+      }
+    }
+  }
+
+  /**
+   * Validates and inserts one row.
+   *
+   * @param fields the fields of the row
+   * @param rejected receives the reason if the row is rejected
+   * @return true if the row was inserted
+   */
+  private boolean importRow(List<String> fields, Consumer<String> rejected) {
+    // Allow any case, and dashes to be used instead of underscores, as on the command line
+    String commandStr = fields.get(0).trim().toUpperCase().replace('-', '_');
+    Command command = IMPORTABLE_COMMANDS.get(commandStr);
+    if (command == null) {
+      rejected.accept("'" + commandStr + "' cannot be imported.");
+      return false;
+    }
+
+    int expectedFields = 1 + command.getNumArgs() + command.getNumOptions();
+    if (fields.size() != expectedFields) {
+      rejected.accept(
+          String.format(
+              "%s rows need %d fields but this one has %d.",
+              commandStr, expectedFields, fields.size()));
+      return false;
+    }
+
+    String[] values = fields.toArray(new String[0]);
+    String[] options = Arrays.copyOfRange(values, 1 + command.getNumArgs(), values.length);
+    Object inserted;
+    try {
+      switch (command) {
+        case CREATE_OPERATOR:
+          inserted = system.insertOperator(values[1], values[2], rejected);
+          break;
+        case CREATE_ACTIVITY:
+          inserted = system.insertActivity(values[1], values[2], values[3], rejected);
+          break;
+        case ADD_PUBLIC_REVIEW:
+          inserted = system.insertPublicReview(values[1], options, rejected);
+          break;
+        case ADD_PRIVATE_REVIEW:
+          inserted = system.insertPrivateReview(values[1], options, rejected);
+          break;
+        case ADD_EXPERT_REVIEW:
+          inserted = system.insertExpertReview(values[1], options, rejected);
+          break;
+        default:
+          throw new IllegalStateException("Unexpected command " + command);
+      }
+    } catch (NumberFormatException e) {
+      // Public and expert reviews fail outright on a rating that is not a whole number
+      String rating = command == Command.ADD_EXPERT_REVIEW ? options[1] : options[2];
+      rejected.accept("Review not added: '" + rating.trim() + "' is not a valid rating.");
+      return false;
+    }
+
+    if (inserted == null) {
+      return false;
+    }
+    insertedByCommand.get(command).incrementAndGet();
+    return true;
+  }
+
+  /** A row of fields together with where it was read from. */
+  private static class Row {
+    private final List<String> fields;
+    private final String origin;
+
+    private Row(List<String> fields, String origin) {
+      this.fields = fields;
+      this.origin = origin;
+    }
+  }
+
+  /** Splits CSV text into rows of fields, one row at a time. */
+  private static class CsvRows {
+    private final BufferedReader reader;
+    private final StringBuilder field = new StringBuilder();
+    private int linesRead;
+    private int rowLine;
+
+    private CsvRows(BufferedReader reader) {
+      this.reader = reader;
+    }
+
+    /**
+     * Returns the line the last row returned by {@link #next()} started on.
+     *
+     * @return the one-based line number
+     */
+    private int getRowLine() {
+      return rowLine;
+    }
+
+    /**
+     * Reads the next row. A quoted field may continue over several lines.
+     *
+     * @return the fields of the row, or null at the end of the input
+     * @throws IOException if the input cannot be read
+     */
+    private List<String> next() throws IOException {
+      String line = readLine();
+      if (line == null) {
+        return null;
+      }
+      rowLine = linesRead;
+
+      List<String> fields = new ArrayList<>();
+      field.setLength(0);
+      boolean quoted = false;
+      int i = 0;
+      while (true) {
+        if (i == line.length()) {
+          if (!quoted) {
+            break;
+          }
+
+          // The quoted field holds a line break, so the row continues on the next line
+          line = readLine();
+          if (line == null) {
+            break;
+          }
+          field.append('\n');
+          i = 0;
+          continue;
+        }
+
+        char c = line.charAt(i++);
+        if (quoted) {
+          if (c != '"') {
+            field.append(c);
+          } else if (i < line.length() && line.charAt(i) == '"') {
+            // A doubled quote stands for one quote character
+            field.append('"');
+            i++;
+          } else {
+            quoted = false;
+          }
+        } else if (c == '"') {
+          quoted = true;
+        } else if (c == ',') {
+          fields.add(field.toString());
+          field.setLength(0);
+        } else {
+          field.append(c);
+        }
+      }
+      fields.add(field.toString());
+      return fields;
+    }
+
+    private String readLine() throws IOException {
+      String line = reader.readLine();
+      if (line == null) {
+        return null;
+      }
+
+      // Ignore the byte order mark some spreadsheets write at the start of the file
+      if (linesRead++ == 0 && line.startsWith("\uFEFF")) {
+        line = line.substring(1);
+      }
+      return line;
+    }
+  }
+}
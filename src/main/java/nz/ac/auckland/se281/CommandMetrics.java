@@ -0,0 +1,107 @@
+package nz.ac.auckland.se281;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import nz.ac.auckland.se281.Main.Command;
+
+/**
+ * Counts and times the commands processed by {@link Main}. Each command has its own latency
+ * histogram, and rejected or failed commands are counted separately. Recording is lock-free, so one
+ * instance can be shared by several command loops.
+ */
+public class CommandMetrics {
+
+  private final Map<Command, LatencyHistogram> latencies = new EnumMap<>(Command.class);
+  private final LongAdder commandsNotFound = new LongAdder();
+  private final LongAdder wrongArgumentCounts = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+
+  /** Constructs an empty set of metrics with a histogram for every command. */
+  public CommandMetrics() {
+    for (Command command : Command.values()) {
+      latencies.put(command, new LatencyHistogram());
+    }
+  }
+
+  /**
+   * Records a command that ran to completion.
+   *
+   * @param command the command
+   * @param nanos how long it took in nanoseconds
+   */
+  public void record(Command command, long nanos) {
+    latencies.get(command).record(nanos);
+  }
+
+  /** Records input that did not name a known command. */
+  public void recordCommandNotFound() {
+    commandsNotFound.increment();
+  }
+
+  /** Records a command given the wrong number of arguments. */
+  public void recordWrongArgumentCount() {
+    wrongArgumentCounts.increment();
+  }
+
+  /** Records a command that threw an exception. */
+  public void recordFailure() {
+    failures.increment();
+  }
+
+  /**
+   * Returns the latency histogram of a command.
+   *
+   * @param command the command
+   * @return its histogram
+   */
+  public LatencyHistogram getLatencies(Command command) {
+    return latencies.get(command);
+  }
+
+  /**
+   * Builds a report with the count, p50, p99 and maximum latency of every command that has run,
+   * followed by the error counts.
+   *
+   * @return the report, one line per entry
+   */
+  public String report() {
+    StringBuilder sb = new StringBuilder();
+
+    for (Map.Entry<Command, LatencyHistogram> entry : latencies.entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      if (histogram.getCount() == 0) {
+        continue;
+      }
+
+      sb.append(
+              String.format(
+                  "%-24s count=%d p50=%s p99=%s max=%s",
+                  entry.getKey(),
+                  histogram.getCount(),
+                  formatNanos(histogram.getPercentile(50)),
+                  formatNanos(histogram.getPercentile(99)),
+                  formatNanos(histogram.getMax())))
+          .append(System.lineSeparator());
+    }
+
+    sb.append(
+            String.format(
+                "Errors: COMMAND_NOT_FOUND=%d WRONG_ARGUMENT_COUNT=%d FAILED=%d",
+                commandsNotFound.sum(), wrongArgumentCounts.sum(), failures.sum()))
+        .append(System.lineSeparator());
+
+    return sb.toString();
+  }
+
+  private static String formatNanos(long nanos) {
+    if (nanos < 1_000) {
+      return nanos + "ns";
+    } else if (nanos < 1_000_000) {
+      return String.format("%.1fus", nanos / 1e3);
+    } else if (nanos < 1_000_000_000) {
+      return String.format("%.1fms", nanos / 1e6);
+    }
+    return String.format("%.2fs", nanos / 1e9);
+  }
+}
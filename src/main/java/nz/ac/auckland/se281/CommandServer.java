@@ -0,0 +1,194 @@
+package nz.ac.auckland.se281;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * TCP front end for the command line. Every connection gets its own session that speaks exactly
+ * the same line-based grammar as the console, including the banner, the command prompt and the
+ * option prompts of the ADD_*_REVIEW commands, and ends with EXIT or when the client disconnects.
+ * A command that fails, such as a review whose rating is not a number, is answered with an error
+ * and the session carries on.
+ *
+ * <p>Clients may pipeline commands, sending many of them without waiting for replies. Commands
+ * that have already arrived are run back to back in order, and their replies are collected and
+ * written together once the session has to wait for more input.
+ *
+ * <p>Each session runs on its own virtual thread, so thousands of mostly idle admin sessions cost
+ * little more than their buffers. All sessions share one thread-safe {@link
+ * OperatorManagementSystem} and one set of {@link CommandMetrics}.
+ */
+public class CommandServer {
+
+  /** Number of pending connections the operating system queues before refusing new ones. */
+  private static final int ACCEPT_BACKLOG = 4096;
+
+  /** Size of the read and write buffers of each connection. */
+  private static final int CONNECTION_BUFFER_SIZE = 1 << 13;
+
+  private final OperatorManagementSystem system;
+  private final CommandMetrics metrics = new CommandMetrics();
+  private final ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor();
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+  private ServerSocket serverSocket;
+  private Thread acceptor;
+
+  /**
+   * Constructs a server for a system. Nothing is accepted until the server is started.
+   *
+   * @param system the system every session works on
+   */
+  public CommandServer(OperatorManagementSystem system) {
+    this.system = system;
+  }
+
+  /**
+   * Starts accepting connections in the background.
+   *
+   * @param address the local address to listen on, or null for every address
+   * @param port the port to listen on, or 0 for any free port
+   * @throws IOException if the port cannot be bound
+   */
+  public void start(InetAddress address, int port) throws IOException {
+    serverSocket = new ServerSocket();
+    serverSocket.setReuseAddress(true);
+    serverSocket.bind(new InetSocketAddress(address, port), ACCEPT_BACKLOG);
+    acceptor = Thread.ofVirtual().name("oms-accept").start(this::acceptConnections);
+  }
+
+  /**
+   * Returns the port the server is listening on.
+   *
+   * @return the bound port
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Returns the metrics recorded by every session.
+   *
+   * @return the shared command metrics
+   */
+  public CommandMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Stops accepting connections, disconnects every session and waits for them to finish.
+   *
+   * @throws IOException if the listening socket cannot be closed
+   */
+  public void close() throws IOException {
+    serverSocket.close();
+
+    // A connection accepted just before the socket closed is only registered once the acceptor
+    // has finished with it, so wait for the acceptor before disconnecting anything
+    try {
+      acceptor.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while stopping the acceptor");
+    }
+
+    for (Socket connection : connections) {
+      try {
+        connection.close();
+      } catch (IOException e) {
+        // The session is ending either way
+      }
+    }
+    sessions.close();
+  }
+
+  private void acceptConnections() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket connection = serverSocket.accept();
+        connections.add(connection);
+        sessions.execute(() -> serve(connection));
+      } catch (SocketException e) {
+        // The server socket was closed
+        return;
+      } catch (IOException e) {
+        System.err.println("Could not accept a connection: " + e);
+      }
+    }
+  }
+
+  private void serve(Socket connection) {
+    try (connection;
+        BufferedReader reader =
+            new BufferedReader(
+                new InputStreamReader(
+                    new ConnectionInputStream(connection.getInputStream()),
+                    StandardCharsets.UTF_8),
+                CONNECTION_BUFFER_SIZE);
+        BufferedWriter writer =
+            new BufferedWriter(
+                new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8),
+                CONNECTION_BUFFER_SIZE)) {
+      // Replies are already coalesced per batch of commands, so send each batch without delay
+      connection.setTcpNoDelay(true);
+
+      // Everything this session prints goes back down its own connection
+      Output.setThreadSink(new WriterSink(writer));
+      new Main(reader, system, metrics).startSession();
+    } catch (IOException | ConnectionLostException e) {
+      // The client went away; its session simply ends
+    } catch (RuntimeException e) {
+      // Commands that fail are answered in the session, so this is a fault of the server itself
+      System.err.println("Session " + connection.getRemoteSocketAddress() + " failed: " + e);
+    } finally {
+      Output.setThreadSink(null);
+      connections.remove(connection);
+    }
+  }
+
+  /**
+   * Input from a client that reports a failed read as a lost connection. It sits beneath the
+   * decoder rather than wrapping the readers, because the JDK readers only avoid pinning a virtual
+   * thread to its carrier while they are not subclassed or stacked on a custom reader.
+   */
+  private static class ConnectionInputStream extends FilterInputStream {
+
+    ConnectionInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() {
+      try {
+        return in.read();
+      } catch (IOException e) {
+        throw new ConnectionLostException(e);
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      try {
+        return in.read(b, off, len);
+      } catch (IOException e) {
+        throw new ConnectionLostException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Signals that the connection a session reads commands from or writes replies to has failed,
+ * usually because the client went away. It is kept apart from every other I/O failure, such as a
+ * write-ahead log that cannot be written, so that only the end of a session is taken in stride.
+ */
+public class ConnectionLostException extends UncheckedIOException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructs an exception for a failed read or write on a connection.
+   *
+   * @param cause the failure reported by the connection's stream
+   */
+  public ConnectionLostException(IOException cause) {
+    super(cause);
+  }
+}
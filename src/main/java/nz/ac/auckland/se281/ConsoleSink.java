@@ -0,0 +1,66 @@
+package nz.ac.auckland.se281;
+
+/**
+ * Output sink that writes to {@link System#out}. In direct mode every line is printed as soon as it
+ * is produced, exactly like calling {@code System.out.println}. In buffered mode lines are
+ * collected and written with a single call when the sink is flushed, which the command loop does
+ * once per command.
+ */
+public class ConsoleSink implements OutputSink {
+
+  /** Buffered text is written early once it grows past this many characters. */
+  private static final int MAX_BUFFERED_CHARS = 1 << 20;
+
+  private final boolean buffered;
+  private final StringBuilder buffer = new StringBuilder();
+
+  /**
+   * Constructs a console sink.
+   *
+   * @param buffered true to collect output until the sink is flushed, false to write immediately
+   */
+  public ConsoleSink(boolean buffered) {
+    this.buffered = buffered;
+  }
+
+  /**
+   * Returns whether this sink collects output until it is flushed.
+   *
+   * @return true if buffered
+   */
+  public boolean isBuffered() {
+    return buffered;
+  }
+
+  @Override
+  public void print(String text) {
+    if (!buffered) {
+      System.out.print(text);
+      return;
+    }
+
+    buffer.append(text);
+    if (buffer.length() > MAX_BUFFERED_CHARS) {
+      flush();
+    }
+  }
+
+  @Override
+  public void println(String line) {
+    if (!buffered) {
+      System.out.println(line);
+      return;
+    }
+
+    print(line + System.lineSeparator());
+  }
+
+  @Override
+  public void flush() {
+    if (buffer.length() > 0) {
+      System.out.print(buffer);
+      buffer.setLength(0);
+    }
+    System.out.flush();
+  }
+}
@@ -1,7 +1,8 @@
 package nz.ac.auckland.se281;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import nz.ac.auckland.se281.Types.ReviewType;
 
 /**
  * Represents an expert review which can include recommended status and image attachments.
@@ -24,7 +25,7 @@ public class ExpertReview extends Review {
     super(id, rating, author);
     this.text = text;
     this.recommended = recommended;
-    this.images = new ArrayList<>();
+    this.images = new CopyOnWriteArrayList<>();
   }
 
   /**
@@ -37,6 +38,16 @@ public class ExpertReview extends Review {
     return "Expert";
   }
 
+  /**
+   * Returns the kind of this review.
+   *
+   * @return {@link ReviewType#EXPERT}
+   */
+  @Override
+  public ReviewType getReviewType() {
+    return ReviewType.EXPERT;
+  }
+
   /**
    * Returns the review content.
    *
@@ -0,0 +1,97 @@
+package nz.ac.auckland.se281;
+
+/**
+ * Builds operator, activity and review IDs. The IDs are identical to those produced by the format
+ * strings {@code "%s-%s-%03d"}, {@code "%s-%03d"} and {@code "%s-R%d"}, but are appended straight
+ * into an exactly sized buffer instead of parsing a format string on every call.
+ */
+public class IdGenerator {
+
+  /** Minimum number of digits in operator and activity sequence numbers. */
+  private static final int PADDED_WIDTH = 3;
+
+  private IdGenerator() {}
+
+  /**
+   * Builds an operator ID such as {@code WACT-AKL-001}.
+   *
+   * @param initials the initials of the operator name
+   * @param locationAbbreviation the abbreviation of the operator's location
+   * @param sequence the positive sequence number of the operator within its location
+   * @return the operator ID
+   */
+  public static String operatorId(
+      CharSequence initials, String locationAbbreviation, int sequence) {
+    StringBuilder id =
+        new StringBuilder(
+            initials.length() + locationAbbreviation.length() + 2 + paddedLength(sequence));
+    id.append(initials).append('-').append(locationAbbreviation).append('-');
+    appendPadded(id, sequence);
+    return id.toString();
+  }
+
+  /**
+   * Builds an activity ID such as {@code WACT-AKL-001-001}.
+   *
+   * @param operatorId the ID of the operator offering the activity
+   * @param sequence the positive sequence number of the activity within its operator
+   * @return the activity ID
+   */
+  public static String activityId(String operatorId, int sequence) {
+    StringBuilder id = new StringBuilder(operatorId.length() + 1 + paddedLength(sequence));
+    id.append(operatorId).append('-');
+    appendPadded(id, sequence);
+    return id.toString();
+  }
+
+  /**
+   * Builds a review ID such as {@code WACT-AKL-001-001-R1}.
+   *
+   * @param activityId the ID of the reviewed activity
+   * @param sequence the positive sequence number of the review within its activity
+   * @return the review ID
+   */
+  public static String reviewId(String activityId, int sequence) {
+    StringBuilder id = new StringBuilder(activityId.length() + 2 + digitCount(sequence));
+    id.append(activityId).append("-R").append(sequence);
+    return id.toString();
+  }
+
+  /**
+   * Appends a sequence number left-padded with zeros to at least three digits.
+   *
+   * @param id the buffer to append to
+   * @param sequence the positive sequence number
+   */
+  private static void appendPadded(StringBuilder id, int sequence) {
+    for (int digits = digitCount(sequence); digits < PADDED_WIDTH; digits++) {
+      id.append('0');
+    }
+    id.append(sequence);
+  }
+
+  /**
+   * Returns the number of characters a padded sequence number occupies.
+   *
+   * @param sequence the positive sequence number
+   * @return the padded length
+   */
+  private static int paddedLength(int sequence) {
+    return Math.max(PADDED_WIDTH, digitCount(sequence));
+  }
+
+  /**
+   * Returns the number of decimal digits in a positive number.
+   *
+   * @param value the positive number
+   * @return the digit count
+   */
+  private static int digitCount(int value) {
+    int digits = 1;
+    while (value >= 10) {
+      value /= 10;
+      digits++;
+    }
+    return digits;
+  }
+}
@@ -0,0 +1,262 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Exports every operator, activity and review of an {@link OperatorManagementSystem} as JSON
+ * Lines: one JSON object per entity, each on its own line. Operators come in creation order, each
+ * followed by its activities and every activity by its reviews, so a reader meets an entity before
+ * anything that refers to it. For example:
+ *
+ * <pre>
+ * {"type":"operator","id":"WACT-AKL-001","name":"West Auckland Camel Treks","location":"AKL",
+ *  "locationName":"Auckland | Tāmaki Makaurau"}
+ * {"type":"activity","id":"WACT-AKL-001-001","operatorId":"WACT-AKL-001","name":"Camel Ride",
+ *  "activityType":"Adventure"}
+ * {"type":"review","id":"WACT-AKL-001-001-R1","activityId":"WACT-AKL-001-001",
+ *  "reviewType":"Public","rating":5,"author":"Alice","text":"Great","endorsed":false}
+ * </pre>
+ *
+ * <p>Public reviews carry their endorsement, private reviews their contact, follow-up request and
+ * resolution, and expert reviews their recommendation and uploaded images.
+ *
+ * <p>The export streams: each record is built in a reused buffer, encoded straight into a
+ * fixed-size byte buffer and drained to a file channel whenever that fills up. Reviews are read in
+ * place rather than copied, so memory use does not grow with the number of reviews. The system can
+ * keep changing during an export; each activity then contributes a prefix of its reviews.
+ */
+public class JsonLinesExporter {
+
+  /** Size of the buffer between the encoder and the file channel. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final CharsetEncoder encoder =
+      StandardCharsets.UTF_8
+          .newEncoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private final StringBuilder record = new StringBuilder();
+
+  private long records;
+
+  private JsonLinesExporter(FileChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * Writes the whole system to a JSON Lines file. The export is written to a temporary file next
+   * to the target and moved into place once complete, so readers never see a partial extract. If
+   * the export fails, the temporary file is deleted.
+   *
+   * @param system the system to export
+   * @param file the file to write
+   * @return the number of records written
+   * @throws IOException if the file cannot be written
+   */
+  public static long export(OperatorManagementSystem system, Path file) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+    long records;
+    try {
+      try (FileChannel channel =
+          FileChannel.open(
+              temp,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        JsonLinesExporter exporter = new JsonLinesExporter(channel);
+        exporter.writeSystem(system);
+        exporter.flush();
+        records = exporter.records;
+      }
+
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      // The export never reached the target, so do not leave its temporary file behind
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+    return records;
+  }
+
+  private void writeSystem(OperatorManagementSystem system) throws IOException {
+    // Operators in creation order, each followed by its activities and their reviews
+    List<Operator> operators = system.getOperators();
+    for (Operator operator : operators) {
+      writeOperator(operator);
+
+      for (Activity activity : operator.getActivities()) {
+        StandardActivity standardActivity = (StandardActivity) activity;
+        writeActivity(standardActivity);
+
+        // Walk the reviews published when the activity is reached, without copying them
+        int reviewCount = standardActivity.getReviewCount();
+        for (int i = 0; i < reviewCount; i++) {
+          writeReview(standardActivity, standardActivity.getReview(i));
+        }
+      }
+    }
+  }
+
+  private void writeOperator(Operator operator) throws IOException {
+    beginRecord("operator", operator.getId());
+    field("name", operator.getName());
+    field("location", operator.getLocation().getLocationAbbreviation());
+    field("locationName", operator.getLocation().getFullName());
+    endRecord();
+  }
+
+  private void writeActivity(StandardActivity activity) throws IOException {
+    beginRecord("activity", activity.getId());
+    field("operatorId", activity.getOperator().getId());
+    field("name", activity.getName());
+    field("activityType", activity.getType().toString());
+    endRecord();
+  }
+
+  private void writeReview(StandardActivity activity, Review review) throws IOException {
+    beginRecord("review", review.getId());
+    field("activityId", activity.getId());
+    field("reviewType", review.getType());
+    field("rating", review.getRating());
+    field("author", review.getAuthor());
+    field("text", review.getContent());
+
+    if (review instanceof PublicReview) {
+      field("endorsed", ((PublicReview) review).isEndorsed());
+    } else if (review instanceof PrivateReview) {
+      PrivateReview privateReview = (PrivateReview) review;
+      field("contact", privateReview.getContact());
+      field("followUpRequested", privateReview.needsFollowUp());
+      field("resolved", privateReview.isResolved());
+      field("resolution", privateReview.isResolved() ? privateReview.getResolution() : null);
+    } else if (review instanceof ExpertReview) {
+      ExpertReview expertReview = (ExpertReview) review;
+      field("recommended", expertReview.isRecommended());
+
+      record.append(",\"images\":[");
+      boolean first = true;
+      for (String image : expertReview.getImages()) {
+        if (!first) {
+          record.append(',');
+        }
+        appendString(image);
+        first = false;
+      }
+      record.append(']');
+    }
+    endRecord();
+  }
+
+  private void beginRecord(String type, String id) {
+    record.setLength(0);
+    record.append("{\"type\":");
+    appendString(type);
+    field("id", id);
+  }
+
+  private void field(String name, String value) {
+    record.append(",\"").append(name).append("\":");
+    if (value == null) {
+      record.append("null");
+    } else {
+      appendString(value);
+    }
+  }
+
+  private void field(String name, int value) {
+    record.append(",\"").append(name).append("\":").append(value);
+  }
+
+  private void field(String name, boolean value) {
+    record.append(",\"").append(name).append("\":").append(value);
+  }
+
+  /**
+   * Appends a JSON string literal, escaping quotes, backslashes and control characters.
+   *
+   * @param value the string to append
+   */
+  private void appendString(String value) {
+    record.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          record.append("\\\"");
+          break;
+        case '\\':
+          record.append("\\\\");
+          break;
+        case '\n':
+          record.append("\\n");
+          break;
+        case '\r':
+          record.append("\\r");
+          break;
+        case '\t':
+          record.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            record.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+          } else {
+            record.append(c);
+          }
+      }
+    }
+    record.append('"');
+  }
+
+  /**
+   * Finishes the current record and encodes it into the buffer, draining the buffer to the
+   * channel as often as needed.
+   *
+   * @throws IOException if the channel cannot be written
+   */
+  private void endRecord() throws IOException {
+    record.append('}').append('\n');
+
+    CharBuffer chars = CharBuffer.wrap(record);
+    encoder.reset();
+    while (encoder.encode(chars, buffer, true).isOverflow()) {
+      drain();
+    }
+    while (encoder.flush(buffer).isOverflow()) {
+      drain();
+    }
+    records++;
+  }
+
+  private void flush() throws IOException {
+    drain();
+    channel.force(true);
+  }
+
+  private void drain() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
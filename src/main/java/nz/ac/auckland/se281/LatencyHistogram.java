@@ -0,0 +1,108 @@
+package nz.ac.auckland.se281;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds, in the style of an HDR histogram. Values below
+ * 32 get a bucket each; above that every power of two is split into 16 buckets, so a reported
+ * percentile is never more than about 6% above the true value. Recording a value only increments a
+ * bucket counter, and it is safe to record from several threads at once.
+ */
+public class LatencyHistogram {
+
+  /** Number of sub-buckets each power of two is split into. */
+  private static final int SUB_BUCKETS = 16;
+
+  /** Values below this limit are counted exactly. */
+  private static final int EXACT_LIMIT = 2 * SUB_BUCKETS;
+
+  /** Enough buckets to cover every positive long. */
+  private static final int BUCKET_COUNT = EXACT_LIMIT + (63 - 5) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder count = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records one latency.
+   *
+   * @param nanos the latency in nanoseconds; negative values are recorded as zero
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    buckets.incrementAndGet(bucketOf(value));
+    count.increment();
+    if (value > max.get()) {
+      max.accumulateAndGet(value, Math::max);
+    }
+  }
+
+  /**
+   * Returns the number of recorded latencies.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the largest recorded latency.
+   *
+   * @return the maximum in nanoseconds, or 0 if nothing was recorded
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns the latency below or at which the given percentage of recorded latencies fall. The
+   * value is the upper bound of the bucket the percentile lands in, capped at the recorded maximum.
+   *
+   * @param percentile the percentile, from 0 to 100
+   * @return the latency in nanoseconds, or 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile) {
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      total += buckets.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    // Walk the buckets until the requested share of values has been passed
+    long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += buckets.get(i);
+      if (seen >= target) {
+        return Math.min(upperBoundOf(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  private static int bucketOf(long value) {
+    if (value < EXACT_LIMIT) {
+      return (int) value;
+    }
+
+    // Keep the top five bits of the value: the leading one and a four bit sub-bucket
+    int shift = 63 - Long.numberOfLeadingZeros(value) - 4;
+    return EXACT_LIMIT + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  private static long upperBoundOf(int bucket) {
+    if (bucket < EXACT_LIMIT) {
+      return bucket;
+    }
+
+    int offset = bucket - EXACT_LIMIT;
+    int shift = offset / SUB_BUCKETS + 1;
+    long subBucket = offset % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
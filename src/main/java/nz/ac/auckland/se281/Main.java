@@ -1,10 +1,17 @@
 package nz.ac.auckland.se281;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /** You cannot modify this class! */
 public class Main {
@@ -52,6 +59,7 @@ public class Main {
         0, "Display the top activity in each location based on public and expert reviews"),
 
     // System commands
+    DISPLAY_METRICS(0, "Print the count and p50/p99/max latency of each command"),
     HELP(0, "Print usage"),
     EXIT(0, "Exit the application");
 
@@ -92,8 +100,181 @@ public class Main {
 
   private static final String COMMAND_PREFIX = "281-activity-operator-system> ";
 
-  public static void main(final String[] args) {
-    new Main(new Scanner(System.in), new OperatorManagementSystem()).start(false);
+  // Commands keyed by their normalized (upper case, underscore separated) name.
+  private static final Map<String, Command> COMMANDS_BY_NAME = new HashMap<>();
+
+  static {
+    for (final Command command : Command.values()) {
+      COMMANDS_BY_NAME.put(command.name(), command);
+    }
+  }
+
+  private static final int BATCH_READ_BUFFER_SIZE = 1 << 16;
+
+  // Longest stretch of input searched for the end of a line that has already arrived.
+  private static final int LOOKAHEAD_LIMIT = 1 << 13;
+
+  // When set, state is loaded from this snapshot file on start and saved back to it on exit.
+  private static final String SNAPSHOT_FILE = System.getProperty("oms.snapshot");
+
+  // When set, every mutation is appended to this log, which is replayed on start.
+  private static final String LOG_FILE = System.getProperty("oms.wal");
+
+  // Number of log records collected before they are forced to disk together.
+  private static final int LOG_SYNC_EVERY = Integer.getInteger("oms.wal.syncEvery", 1);
+
+  public static void main(final String[] args) throws IOException, InterruptedException {
+    // Replay a command file instead of starting the interactive prompt.
+    if (args.length == 2 && args[0].equals("--batch")) {
+      runBatch(Path.of(args[1]));
+      return;
+    }
+
+    // Load CSV files in bulk instead of starting the interactive prompt.
+    if (args.length >= 2 && (args[0].equals("--import") || args[0].equals("--parallel-import"))) {
+      final List<Path> csvFiles = new ArrayList<>();
+      for (int i = 1; i < args.length; i++) {
+        csvFiles.add(Path.of(args[i]));
+      }
+      runImport(csvFiles, args[0].equals("--parallel-import"));
+      return;
+    }
+
+    // Write the whole system out as JSON Lines instead of starting the interactive prompt.
+    if (args.length == 2 && args[0].equals("--export")) {
+      runExport(Path.of(args[1]));
+      return;
+    }
+
+    // Serve sessions over TCP instead of reading the console.
+    if (args.length == 2 && args[0].equals("--serve")) {
+      runServer(Integer.parseInt(args[1]));
+      return;
+    }
+
+    final OperatorManagementSystem system = openSystem();
+    new Main(new Scanner(System.in), system).start(false);
+    closeSystem(system);
+  }
+
+  public static void runBatch(final Path commandFile) throws IOException {
+    // Command output is only written when the buffer fills up or the batch ends.
+    Output.setSink(new ConsoleSink(true));
+
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(Files.newInputStream(commandFile), StandardCharsets.UTF_8),
+            BATCH_READ_BUFFER_SIZE)) {
+      final OperatorManagementSystem system = openSystem();
+      new Main(reader, system).startBatch();
+      closeSystem(system);
+    }
+  }
+
+  public static void runImport(final List<Path> csvFiles, final boolean parallel)
+      throws IOException {
+    final OperatorManagementSystem system = openSystem();
+    final BulkImporter importer = new BulkImporter(system);
+    final long startTime = System.nanoTime();
+
+    // Rejected rows are reported as they are found and the load carries on.
+    for (final Path csvFile : csvFiles) {
+      if (parallel) {
+        importer.loadParallel(csvFile, System.err::println);
+      } else {
+        importer.load(csvFile, System.err::println);
+      }
+    }
+
+    final double seconds = (System.nanoTime() - startTime) / 1e9;
+    final int rows = importer.getRows();
+    System.err.println(
+        String.format(
+            "Import complete: %d rows (%d rejected) in %.3f s, %.0f rows/s",
+            rows, importer.getRejectedRows(), seconds, seconds > 0 ? rows / seconds : 0.0));
+    System.err.println(
+        String.format(
+            "  %d operators, %d activities, %d public, %d private and %d expert reviews",
+            importer.getInserted(Command.CREATE_OPERATOR),
+            importer.getInserted(Command.CREATE_ACTIVITY),
+            importer.getInserted(Command.ADD_PUBLIC_REVIEW),
+            importer.getInserted(Command.ADD_PRIVATE_REVIEW),
+            importer.getInserted(Command.ADD_EXPERT_REVIEW)));
+    closeSystem(system);
+  }
+
+  public static void runExport(final Path exportFile) throws IOException {
+    // Exporting only reads the state, so the snapshot and the log are left exactly as they are.
+    final OperatorManagementSystem system = openSystemReadOnly();
+    final long startTime = System.nanoTime();
+    final long records = JsonLinesExporter.export(system, exportFile);
+
+    final double seconds = (System.nanoTime() - startTime) / 1e9;
+    System.err.println(
+        String.format(
+            "Export complete: %d records in %.3f s, %.0f records/s",
+            records, seconds, seconds > 0 ? records / seconds : 0.0));
+  }
+
+  public static void runServer(final int port) throws IOException, InterruptedException {
+    final OperatorManagementSystem system = openSystem();
+    final CommandServer server = new CommandServer(system);
+    server.start(null, port);
+    System.err.println("Listening on port " + server.getPort());
+
+    // Sessions end with their connections; the system is saved when the process is stopped.
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  try {
+                    server.close();
+                    closeSystem(system);
+                  } catch (final IOException e) {
+                    System.err.println("Could not save state on shutdown: " + e);
+                  }
+                }));
+    Thread.currentThread().join();
+  }
+
+  private static OperatorManagementSystem openSystem() throws IOException {
+    final boolean hasSnapshot = SNAPSHOT_FILE != null && Files.exists(Path.of(SNAPSHOT_FILE));
+    final OperatorManagementSystem system =
+        hasSnapshot ? SnapshotStore.load(Path.of(SNAPSHOT_FILE)) : new OperatorManagementSystem();
+
+    // Replay whatever was logged after the snapshot, then keep logging.
+    if (LOG_FILE != null) {
+      final long coveredGeneration =
+          hasSnapshot ? SnapshotStore.readLogGeneration(Path.of(SNAPSHOT_FILE)) : 0;
+      final WriteAheadLog log = WriteAheadLog.open(Path.of(LOG_FILE), LOG_SYNC_EVERY);
+      log.recover(system, coveredGeneration);
+      system.setWriteAheadLog(log);
+    }
+    return system;
+  }
+
+  private static OperatorManagementSystem openSystemReadOnly() throws IOException {
+    final boolean hasSnapshot = SNAPSHOT_FILE != null && Files.exists(Path.of(SNAPSHOT_FILE));
+    final OperatorManagementSystem system =
+        hasSnapshot ? SnapshotStore.load(Path.of(SNAPSHOT_FILE)) : new OperatorManagementSystem();
+
+    // Replay whatever was logged after the snapshot without attaching the log.
+    if (LOG_FILE != null) {
+      final long coveredGeneration =
+          hasSnapshot ? SnapshotStore.readLogGeneration(Path.of(SNAPSHOT_FILE)) : 0;
+      WriteAheadLog.replay(Path.of(LOG_FILE), system, coveredGeneration);
+    }
+    return system;
+  }
+
+  private static void closeSystem(final OperatorManagementSystem system) throws IOException {
+    final WriteAheadLog log = system.getWriteAheadLog();
+    if (SNAPSHOT_FILE != null) {
+      system.checkpoint(Path.of(SNAPSHOT_FILE));
+    }
+    if (log != null) {
+      log.close();
+    }
   }
 
   public static String help() {
@@ -161,16 +342,48 @@ public class Main {
             + "                                                                                    "
             + "                                                                                    "
             + "    \r\n");
-    System.out.println(buf.toString());
+    Output.println(buf.toString());
   }
 
   private final Scanner scanner;
 
+  private final BufferedReader reader;
+
   private final OperatorManagementSystem system;
 
+  private final CommandMetrics metrics;
+
+  // Whether prompts are printed and output is flushed before waiting for input.
+  private boolean interactive = true;
+
+  // Whether a failing command is reported and skipped instead of ending the prompt.
+  private boolean skipFailedCommands;
+
+  private int linesRead;
+
   public Main(final Scanner scanner, final OperatorManagementSystem system) {
     this.scanner = scanner;
+    this.reader = null;
+    this.system = system;
+    this.metrics = new CommandMetrics();
+  }
+
+  public Main(final BufferedReader reader, final OperatorManagementSystem system) {
+    this(reader, system, new CommandMetrics());
+  }
+
+  public Main(
+      final BufferedReader reader,
+      final OperatorManagementSystem system,
+      final CommandMetrics metrics) {
+    this.scanner = null;
+    this.reader = reader;
     this.system = system;
+    this.metrics = metrics;
+  }
+
+  public CommandMetrics getMetrics() {
+    return metrics;
   }
 
   public void start() {
@@ -178,40 +391,215 @@ public class Main {
   }
 
   public void start(boolean debug) {
+    interactive = true;
     printBanner();
-    System.out.println(help());
+    Output.println(help());
 
     // Prompt and process commands until the exit command.
     String command;
     do {
-      System.out.print(COMMAND_PREFIX);
-      command = scanner.nextLine().trim();
+      Output.print(COMMAND_PREFIX);
+      command = readLine();
+      if (command == null) {
+        // The input was closed without an exit command.
+        break;
+      }
       if (debug) {
-        System.out.println(command);
+        Output.println(command);
       }
-    } while (processCommand(command, debug));
+    } while (processPromptedCommand(command, debug));
+
+    // Write out whatever the final command produced.
+    Output.flush();
   }
 
-  private static String[] splitWithQuotes(String input) {
+  public void startSession() {
+    // A remote admin's malformed command is answered with an error, as a batch skips it, rather
+    // than dropping the connection. Only the connection itself failing ends the session.
+    skipFailedCommands = true;
+    start(false);
+  }
+
+  public void startBatch() {
+    interactive = false;
+    final long startTime = System.nanoTime();
+    int commands = 0;
+    int failures = 0;
+
+    // Process commands without prompts until the exit command or the end of the input.
+    String command;
+    boolean running = true;
+    while (running && (command = readLine()) != null) {
+      if (command.isEmpty()) {
+        continue;
+      }
+
+      commands++;
+      final int line = linesRead;
+      try {
+        running = processCommand(command, false);
+      } catch (final RuntimeException e) {
+        // A malformed command must not abort the rest of the batch.
+        failures++;
+        System.err.println("Batch line " + line + " failed: " + e);
+      }
+    }
+    Output.flush();
+
+    final double seconds = (System.nanoTime() - startTime) / 1e9;
+    System.err.println(
+        String.format(
+            "Batch complete: %d commands (%d failed) from %d lines in %.3f s, %.0f commands/s",
+            commands, failures, linesRead, seconds, seconds > 0 ? commands / seconds : 0.0));
+    System.err.print(metrics.report());
+  }
+
+  private boolean processPromptedCommand(final String command, final boolean debug) {
+    if (!skipFailedCommands) {
+      return processCommand(command, debug);
+    }
+
+    final int line = linesRead;
+    try {
+      return processCommand(command, debug);
+    } catch (final ConnectionLostException e) {
+      throw e;
+    } catch (final RuntimeException e) {
+      System.err.println("Session line " + line + " failed: " + e);
+      MessageCli.COMMAND_FAILED.printMessage(e.toString());
+      return true;
+    }
+  }
+
+  // Returns the next trimmed input line, or null once a reader-backed input is exhausted.
+  private String readLine() {
+    if (interactive && !inputPending()) {
+      // Everything produced so far must be visible before waiting for the user. Commands that
+      // arrived together are run back to back and their replies go out in one write.
+      Output.flush();
+    }
+
+    final String line;
+    if (reader == null) {
+      line = scanner.nextLine();
+    } else {
+      try {
+        line = reader.readLine();
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    if (line == null) {
+      return null;
+    }
+    linesRead++;
+    return line.trim();
+  }
+
+  // Whether the next line can be read without waiting, because the client sent all of it along
+  // with the previous ones. A line that has only partly arrived does not count, since reading it
+  // would wait for the rest.
+  private boolean inputPending() {
+    if (reader == null) {
+      return false;
+    }
+    try {
+      if (!reader.ready()) {
+        return false;
+      }
+
+      // Look through what has already arrived for the end of the line, then step back.
+      reader.mark(LOOKAHEAD_LIMIT);
+      try {
+        for (int i = 0; i < LOOKAHEAD_LIMIT && reader.ready(); i++) {
+          final int c = reader.read();
+          if (c == '\n' || c == '\r' || c < 0) {
+            return true;
+          }
+        }
+        return false;
+      } finally {
+        reader.reset();
+      }
+    } catch (final IOException e) {
+      // Let the read itself report the problem.
+      return false;
+    }
+  }
+
+  // Splits a command line into its words. Package-private so the tokenizer can be tested alone.
+  static String[] splitWithQuotes(String input) {
     List<String> items = new ArrayList<>();
+    int length = input.length();
+    int start = 0;
+
+    // Split on whitespace, while respecting words surrounded by single quotes
+    while (start < length) {
+      // Skip the whitespace before the next word
+      if (isSeparator(input.charAt(start))) {
+        start++;
+        continue;
+      }
 
-    // Match based on spaces, while respecting words surrounded by single quotes
-    Matcher matcher = Pattern.compile("('(?:[^']+|'')*'\\S*|\\S+)").matcher(input);
+      // A quoted word runs to its closing quote (plus anything attached to it), a plain word
+      // runs to the next whitespace
+      int end = input.charAt(start) == '\'' ? findQuotedEnd(input, start) : -1;
+      if (end < 0) {
+        end = start;
+      }
+      while (end < length && !isSeparator(input.charAt(end))) {
+        end++;
+      }
 
-    while (matcher.find()) {
-      String matched = matcher.group(1);
+      String matched = input.substring(start, end);
 
       // Remove the surrounding quotes
-      if (matched.startsWith("'") && matched.endsWith("'")) {
+      if (matched.length() > 1 && matched.startsWith("'") && matched.endsWith("'")) {
         matched = matched.substring(1, matched.length() - 1);
       }
 
       items.add(matched);
+      start = end;
     }
 
     return items.toArray(new String[0]);
   }
 
+  // Finds the end of a quoted word starting at the given opening quote. Inside the quotes any
+  // character may appear, and a doubled quote ('') does not close the word. Returns the index just
+  // after the closing quote, or -1 if the word is never closed.
+  private static int findQuotedEnd(String input, int openingQuote) {
+    int length = input.length();
+    int lastDoubledQuote = -1;
+    int i = openingQuote + 1;
+
+    while (true) {
+      // Move past everything that is not a quote
+      while (i < length && input.charAt(i) != '\'') {
+        i++;
+      }
+
+      if (i >= length) {
+        // Unclosed: fall back to closing on the first quote of the last doubled quote, if any
+        return lastDoubledQuote < 0 ? -1 : lastDoubledQuote + 1;
+      }
+
+      if (i + 1 < length && input.charAt(i + 1) == '\'') {
+        // A doubled quote stays inside the word
+        lastDoubledQuote = i;
+        i += 2;
+      } else {
+        return i + 1;
+      }
+    }
+  }
+
+  // Whitespace as understood by the \s regular expression class.
+  private static boolean isSeparator(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
   private boolean processCommand(String input, boolean debug) {
     // Remove whitespace at the beginning and end of the input.
     input = input.trim();
@@ -224,26 +612,43 @@ public class Main {
     }
 
     // Allow any case, and dashes to be used instead of underscores.
-    final String commandStr = args[0].toUpperCase().replaceAll("-", "_");
+    final String commandStr = args[0].toUpperCase().replace('-', '_');
 
-    final Command command;
+    // Command names correspond to the enum names.
+    final Command command = COMMANDS_BY_NAME.get(commandStr);
 
-    try {
-      // Command names correspond to the enum names.
-      command = Command.valueOf(commandStr);
-    } catch (final Exception e) {
+    if (command == null) {
+      metrics.recordCommandNotFound();
       MessageCli.COMMAND_NOT_FOUND.printMessage(commandStr);
       return true;
     }
 
     // Check if the number of arguments provided don't match up as required for that command
     if (!checkArgs(command, args)) {
+      metrics.recordWrongArgumentCount();
       MessageCli.WRONG_ARGUMENT_COUNT.printMessage(
           String.valueOf(command.getNumArgs()), command.getNumArgs() != 1 ? "s" : "", commandStr);
 
       return true;
     }
 
+    // Read the options first so that waiting for input is not timed.
+    final String[] options = command.hasOptions() ? processOptions(command, debug) : null;
+
+    final long startTime = System.nanoTime();
+    final boolean more;
+    try {
+      more = dispatch(command, args, options);
+    } catch (final RuntimeException e) {
+      metrics.recordFailure();
+      throw e;
+    }
+    metrics.record(command, System.nanoTime() - startTime);
+
+    return more;
+  }
+
+  private boolean dispatch(final Command command, final String[] args, final String[] options) {
     switch (command) {
       case SEARCH_OPERATORS:
         system.searchOperators(args[1]);
@@ -261,13 +666,13 @@ public class Main {
         system.searchActivities(args[1]);
         break;
       case ADD_PUBLIC_REVIEW:
-        system.addPublicReview(args[1], processOptions(command, debug));
+        system.addPublicReview(args[1], options);
         break;
       case ADD_PRIVATE_REVIEW:
-        system.addPrivateReview(args[1], processOptions(command, debug));
+        system.addPrivateReview(args[1], options);
         break;
       case ADD_EXPERT_REVIEW:
-        system.addExpertReview(args[1], processOptions(command, debug));
+        system.addExpertReview(args[1], options);
         break;
       case DISPLAY_REVIEWS:
         system.displayReviews(args[1]);
@@ -288,8 +693,11 @@ public class Main {
         MessageCli.END.printMessage();
         // Signal that the program should exit.
         return false;
+      case DISPLAY_METRICS:
+        Output.print(metrics.report());
+        break;
       case HELP:
-        System.out.println(help());
+        Output.println(help());
         break;
     }
 
@@ -302,12 +710,15 @@ public class Main {
 
     // Prompt the user for each option
     for (int i = 0; i < command.getNumOptions(); i++) {
-      System.out.print("\t" + command.getOptionPrompt(i) + ": ");
-      options[i] = scanner.nextLine().trim();
+      if (interactive) {
+        Output.print("\t" + command.getOptionPrompt(i) + ": ");
+      }
+      final String option = readLine();
+      options[i] = option == null ? "" : option;
 
       // Print out the response in case we are in automated testing mode
       if (debug) {
-        System.out.println(options[i]);
+        Output.println(options[i]);
       }
     }
     return options;
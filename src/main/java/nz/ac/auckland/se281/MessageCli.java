@@ -45,27 +45,25 @@ public enum MessageCli {
   WRONG_ARGUMENT_COUNT(
       "Error! Incorrect number of arguments provided. Expected %s argument%s for the \"%s\""
           + " command"),
+  COMMAND_FAILED("Error! Command failed: %s"),
 
   END("You closed the terminal. Goodbye.");
 
   private final String msg;
 
+  private final MessageTemplate template;
+
   private MessageCli(final String msg) {
     this.msg = msg;
+    this.template = new MessageTemplate(msg);
   }
 
   public String getMessage(final String... args) {
-    String tmpMessage = msg;
-
-    for (final String arg : args) {
-      tmpMessage = tmpMessage.replaceFirst("%s", arg);
-    }
-
-    return tmpMessage;
+    return template.render(args);
   }
 
   public void printMessage(final String... args) {
-    System.out.println(getMessage(args));
+    Output.println(getMessage(args));
   }
 
   @Override
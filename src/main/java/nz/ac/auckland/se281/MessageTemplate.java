@@ -0,0 +1,69 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message template whose {@code %s} placeholders are filled in order. The template is split into
+ * its literal segments once, so rendering is a single pass of appends into a reused buffer.
+ * Argument values are copied as-is, so characters such as {@code $} and {@code \} need no escaping.
+ */
+public class MessageTemplate {
+
+  /** Marker that is replaced by the next argument. */
+  private static final String PLACEHOLDER = "%s";
+
+  /** Buffers larger than this are not kept for reuse after rendering. */
+  private static final int MAX_RETAINED_CAPACITY = 8192;
+
+  /** Per-thread buffer reused across renders. */
+  private static final ThreadLocal<StringBuilder> BUFFER =
+      ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+  /** Literal text around the placeholders; there is one more segment than placeholders. */
+  private final String[] segments;
+
+  /**
+   * Splits a template into its literal segments.
+   *
+   * @param template the template text containing zero or more {@code %s} placeholders
+   */
+  public MessageTemplate(String template) {
+    List<String> parts = new ArrayList<>();
+    int start = 0;
+    int next;
+    while ((next = template.indexOf(PLACEHOLDER, start)) >= 0) {
+      parts.add(template.substring(start, next));
+      start = next + PLACEHOLDER.length();
+    }
+    parts.add(template.substring(start));
+    this.segments = parts.toArray(new String[0]);
+  }
+
+  /**
+   * Fills the placeholders with the given arguments in order. Extra arguments are ignored and
+   * placeholders without an argument are left as {@code %s}.
+   *
+   * @param args the values to insert
+   * @return the rendered message
+   */
+  public String render(String... args) {
+    StringBuilder buffer = BUFFER.get();
+    buffer.setLength(0);
+
+    // Interleave the literal segments with the arguments
+    buffer.append(segments[0]);
+    for (int i = 1; i < segments.length; i++) {
+      buffer.append(i <= args.length ? args[i - 1] : PLACEHOLDER).append(segments[i]);
+    }
+
+    String message = buffer.toString();
+
+    // Do not hold on to buffers grown by unusually long messages
+    if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+      BUFFER.remove();
+    }
+
+    return message;
+  }
+}
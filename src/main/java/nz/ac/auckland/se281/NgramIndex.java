@@ -0,0 +1,125 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index of character n-grams used to answer substring queries without scanning every
+ * indexed string. Every string is indexed under all of its substrings of length 1 to 3, so short
+ * queries resolve directly to a postings list and longer queries only need to verify the documents
+ * that contain their rarest trigram. Documents are identified by the order in which they were
+ * added.
+ */
+public class NgramIndex {
+
+  /** Longest gram stored in the index. */
+  private static final int MAX_GRAM_LENGTH = 3;
+
+  /** Indexed strings, positioned by document ID. */
+  private List<String> texts = new ArrayList<>();
+
+  /** Postings list of document IDs for every gram seen so far. */
+  private Map<String, Postings> postings = new HashMap<>();
+
+  /**
+   * Adds a string to the index. Callers are expected to normalize case before indexing and
+   * querying.
+   *
+   * @param text the string to index
+   * @return the document ID assigned to the string
+   */
+  public int add(String text) {
+    int docId = texts.size();
+    texts.add(text);
+
+    // Register every gram of length 1 to 3 under this document
+    for (int length = 1; length <= MAX_GRAM_LENGTH; length++) {
+      for (int start = 0; start + length <= text.length(); start++) {
+        postings
+            .computeIfAbsent(text.substring(start, start + length), gram -> new Postings())
+            .add(docId);
+      }
+    }
+
+    return docId;
+  }
+
+  /**
+   * Returns the number of documents in the index.
+   *
+   * @return the document count
+   */
+  public int size() {
+    return texts.size();
+  }
+
+  /**
+   * Marks every document that contains the query as a substring in the given bit set.
+   *
+   * @param query the substring to look for
+   * @param matches the bit set that receives the matching document IDs
+   */
+  public void collectMatches(String query, BitSet matches) {
+    // Every string contains the empty string
+    if (query.isEmpty()) {
+      matches.set(0, texts.size());
+      return;
+    }
+
+    // Short queries are grams themselves, so their postings are exact
+    if (query.length() <= MAX_GRAM_LENGTH) {
+      Postings exact = postings.get(query);
+      if (exact != null) {
+        exact.copyInto(matches);
+      }
+      return;
+    }
+
+    // Pick the trigram with the fewest documents as the candidate list
+    Postings rarest = null;
+    for (int start = 0; start + MAX_GRAM_LENGTH <= query.length(); start++) {
+      Postings candidate = postings.get(query.substring(start, start + MAX_GRAM_LENGTH));
+      if (candidate == null) {
+        return;
+      }
+      if (rarest == null || candidate.size < rarest.size) {
+        rarest = candidate;
+      }
+    }
+
+    // Verify each candidate against the full query
+    for (int i = 0; i < rarest.size; i++) {
+      int docId = rarest.ids[i];
+      if (texts.get(docId).contains(query)) {
+        matches.set(docId);
+      }
+    }
+  }
+
+  /** Growable, duplicate-free list of ascending document IDs. */
+  private static class Postings {
+    private int[] ids = new int[4];
+    private int size;
+
+    private void add(int docId) {
+      // Grams repeated within one document are only recorded once
+      if (size > 0 && ids[size - 1] == docId) {
+        return;
+      }
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = docId;
+    }
+
+    private void copyInto(BitSet matches) {
+      for (int i = 0; i < size; i++) {
+        matches.set(ids[i]);
+      }
+    }
+  }
+}
@@ -1,19 +1,20 @@
 package nz.ac.auckland.se281;
 
-import java.util.ArrayList;
 import java.util.List;
 import nz.ac.auckland.se281.Types.Location;
 
 /**
  * Represents an operator in the system. Each operator has a name, location, unique ID, and a list
- * of activities they offer.
+ * of activities they offer. The activity list can be read while activities are being added, and
+ * adding one neither copies the list nor locks out readers. The system creates activities while
+ * holding the operator's monitor so that they are numbered without gaps.
  */
 public class Operator {
 
   private String name;
   private Location location;
   private String id;
-  private List<Activity> activities;
+  private AppendOnlyList<Activity> activities;
 
   /**
    * Constructs a new Operator instance.
@@ -26,7 +27,7 @@ public class Operator {
     this.name = name;
     this.location = location;
     this.id = id;
-    this.activities = new ArrayList<>();
+    this.activities = new AppendOnlyList<>();
   }
 
   /**
@@ -57,12 +58,21 @@ public class Operator {
   }
 
   /**
-   * Returns a list of activities offered by the operator.
+   * Returns a list of activities offered by the operator, in the order they were added.
    *
-   * @return list of activities
+   * @return a read-only copy of the list of activities
    */
   public List<Activity> getActivities() {
-    return activities;
+    return activities.snapshot();
+  }
+
+  /**
+   * Returns the number of activities offered by the operator, without copying the list.
+   *
+   * @return the activity count
+   */
+  public int getActivityCount() {
+    return activities.size();
   }
 
   /**
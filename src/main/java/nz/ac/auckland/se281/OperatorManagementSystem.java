@@ -1,7 +1,20 @@
 package nz.ac.auckland.se281;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import nz.ac.auckland.se281.Types.ActivityType;
 import nz.ac.auckland.se281.Types.Location;
 
@@ -9,14 +22,74 @@ import nz.ac.auckland.se281.Types.Location;
  * The OperatorManagementSystem class handles all core logic for managing operators and their
  * associated activities in the system. This includes creating, viewing, and searching both
  * operators and activities.
+ *
+ * <p>The system is safe for concurrent use, with locking striped along the ID hierarchy. Creating
+ * an operator holds the lock of its location and creating an activity holds the monitor of its
+ * operator, so each sequence number is read and used under one lock. Reviews are numbered from an
+ * atomic sequence per activity and appended to a lock-free list; while a write-ahead log is
+ * attached they are numbered and logged under the log's monitor instead, and only take their
+ * number once the record is written. A number is never handed out without being used, so the IDs
+ * within each location, operator and activity are unique and free of gaps, though concurrent
+ * creations receive them in whichever order they reach the lock.
+ *
+ * <p>The operator list and the search indexes, which every location shares, sit behind a single
+ * read-write lock that is held just long enough to update or query them. Every mutation also holds
+ * the shared side of a system-wide mutation lock while it is logged and applied, so a checkpoint,
+ * which takes the exclusive side, sees each one either completely or not at all.
  */
 public class OperatorManagementSystem {
 
   /** List of all operators managed in the system. */
   private List<Operator> operators = new ArrayList<>();
 
+  /** Case-folded names of the operators in each location, used to reject duplicates. */
+  private Map<Location, Set<String>> operatorNamesByLocation = new EnumMap<>(Location.class);
+
+  /** Number of operators created in each location, used to number their IDs. */
+  private Map<Location, Integer> operatorCountsByLocation = new EnumMap<>(Location.class);
+
+  /** Lock for each location, held while an operator is created there. */
+  private Map<Location, ReentrantLock> locationLocks = new EnumMap<>(Location.class);
+
+  /** Guards the operator list and both search indexes, which are shared by every location. */
+  private ReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+  /**
+   * Held shared by every mutation while it is logged and applied, and exclusively by a checkpoint,
+   * so a snapshot never includes a change that is missing from the log or the other way round.
+   */
+  private ReadWriteLock mutationLock = new ReentrantReadWriteLock();
+
+  /** Index of operators keyed by their case-folded ID, kept in sync with the operator list. */
+  private Map<String, Operator> operatorsById = new ConcurrentHashMap<>();
+
+  /** Index of every activity in the system keyed by its case-folded ID. */
+  private Map<String, StandardActivity> activitiesById = new ConcurrentHashMap<>();
+
+  /** Index of every review in the system keyed by its case-folded ID. */
+  private Map<String, Review> reviewsById = new ConcurrentHashMap<>();
+
+  /** Search index over operator names and locations, kept in sync with the operator list. */
+  private OperatorSearchIndex operatorSearchIndex = new OperatorSearchIndex();
+
+  /** Search index over activity names, types and locations, kept in sync with every operator. */
+  private ActivitySearchIndex activitySearchIndex = new ActivitySearchIndex();
+
+  /** Per-location ranking of reviewed activities, updated as reviews are added. */
+  private ActivityLeaderboard leaderboard = new ActivityLeaderboard();
+
+  /** Log that every successful mutation is recorded in, or null if mutations are not logged. */
+  private volatile WriteAheadLog log;
+
   /** Constructs the operator management system with an empty operator list. */
-  public OperatorManagementSystem() {}
+  public OperatorManagementSystem() {
+    // Per-location state exists up front, so concurrent creations never add to these maps
+    for (Location loc : Location.values()) {
+      locationLocks.put(loc, new ReentrantLock());
+      operatorNamesByLocation.put(loc, new HashSet<>());
+      operatorCountsByLocation.put(loc, 0);
+    }
+  }
 
   /**
    * Searches for operators using a keyword. Matches against name, location name, and location
@@ -27,7 +100,7 @@ public class OperatorManagementSystem {
   public void searchOperators(String keyword) {
     // Validate the keyword input
     if (keyword == null || keyword.isBlank()) {
-      System.out.println("There are no matching operators found.");
+      Output.println("There are no matching operators found.");
       return;
     }
 
@@ -36,32 +109,24 @@ public class OperatorManagementSystem {
     List<Operator> matches = new ArrayList<>();
 
     // Handle wildcard search
-    if (keyword.equals("*")) {
-      matches.addAll(operators);
-    } else {
-      // Iterate through all operators to find matches
-      for (Operator op : operators) {
-        String name = op.getName().toLowerCase();
-        String location = op.getLocation().getFullName().toLowerCase();
-        String locationAbbrev = op.getLocation().getLocationAbbreviation().toLowerCase();
-
-        // Skip invalid keywords
-        if (keyword.equals("|")) {
-          continue;
-        }
-
-        // Check if the keyword matches any operator fields
-        if (name.contains(keyword)
-            || location.contains(keyword)
-            || locationAbbrev.contains(keyword)) {
-          matches.add(op);
+    indexLock.readLock().lock();
+    try {
+      if (keyword.equals("*")) {
+        matches.addAll(operators);
+      } else if (!keyword.equals("|")) {
+        // Use the search index to find operators matching on name or location, in creation order
+        BitSet positions = operatorSearchIndex.search(keyword);
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+          matches.add(operators.get(i));
         }
       }
+    } finally {
+      indexLock.readLock().unlock();
     }
 
     // If no matches are found, print a message and return
     if (matches.isEmpty()) {
-      System.out.println("There are no matching operators found.");
+      Output.println("There are no matching operators found.");
       return;
     }
 
@@ -100,31 +165,41 @@ public class OperatorManagementSystem {
    * @param locationStr location in string format
    */
   public void createOperator(String operatorName, String locationStr) {
+    Operator operator = insertOperator(operatorName, locationStr, Output::println);
+
+    // Print confirmation message
+    if (operator != null) {
+      MessageCli.OPERATOR_CREATED.printMessage(
+          operator.getName(), operator.getId(), operator.getLocation().getFullName());
+    }
+  }
+
+  /**
+   * Validates and creates an operator exactly like {@link #createOperator(String, String)}, but
+   * hands any rejection message to the caller instead of printing it and prints nothing on success.
+   *
+   * @param operatorName name of the operator
+   * @param locationStr location in string format
+   * @param rejected receives the message explaining why the operator was not created
+   * @return the new operator, or null if it was rejected
+   */
+  Operator insertOperator(String operatorName, String locationStr, Consumer<String> rejected) {
     // Trim and validate the operator name
     operatorName = operatorName.trim();
     if (operatorName == null || operatorName.isBlank() || operatorName.length() < 3) {
-      MessageCli.OPERATOR_NOT_CREATED_INVALID_OPERATOR_NAME.printMessage(operatorName);
-      return;
+      rejected.accept(
+          MessageCli.OPERATOR_NOT_CREATED_INVALID_OPERATOR_NAME.getMessage(operatorName));
+      return null;
     }
 
     // Parse and validate the location
     Location loc = Location.fromString(locationStr);
     if (loc == null) {
-      MessageCli.OPERATOR_NOT_CREATED_INVALID_LOCATION.printMessage(locationStr);
-      return;
+      rejected.accept(MessageCli.OPERATOR_NOT_CREATED_INVALID_LOCATION.getMessage(locationStr));
+      return null;
     }
 
-    // Check for duplicate operators in the same location
-    for (Operator op : operators) {
-      if (op.getName().equalsIgnoreCase(operatorName)
-          && op.getLocation().getLocationAbbreviation().equals(loc.getLocationAbbreviation())) {
-        MessageCli.OPERATOR_NOT_CREATED_ALREADY_EXISTS_SAME_LOCATION.printMessage(
-            operatorName, loc.getFullName());
-        return;
-      }
-    }
-
-    // Generate the operator's unique ID
+    // Generate the operator's initials
     StringBuilder initials = new StringBuilder();
     for (String word : operatorName.split(" ")) {
       if (!word.isBlank()) {
@@ -132,22 +207,30 @@ public class OperatorManagementSystem {
       }
     }
 
-    int count = 0;
-    for (Operator op : operators) {
-      if (op.getLocation().getLocationAbbreviation().equals(loc.getLocationAbbreviation())) {
-        count++;
+    // The duplicate check and the numbering must see every operator created in the location
+    ReentrantLock locationLock = locationLocks.get(loc);
+    locationLock.lock();
+    try {
+      // Check for duplicate operators in the same location
+      if (operatorNamesByLocation.get(loc).contains(foldCase(operatorName))) {
+        rejected.accept(
+            MessageCli.OPERATOR_NOT_CREATED_ALREADY_EXISTS_SAME_LOCATION.getMessage(
+                operatorName, loc.getFullName()));
+        return null;
       }
-    }
-
-    String operatorId =
-        String.format("%s-%s-%03d", initials, loc.getLocationAbbreviation(), count + 1);
 
-    // Create and add the new operator
-    Operator newOp = new Operator(operatorName, loc, operatorId);
-    operators.add(newOp);
-
-    // Print confirmation message
-    MessageCli.OPERATOR_CREATED.printMessage(operatorName, operatorId, loc.getFullName());
+      // Generate the operator's unique ID
+      int count = operatorCountsByLocation.get(loc);
+      String operatorId =
+          IdGenerator.operatorId(initials, loc.getLocationAbbreviation(), count + 1);
+
+      // Create and add the new operator
+      Operator operator = new Operator(operatorName, loc, operatorId);
+      registerOperator(operator);
+      return operator;
+    } finally {
+      locationLock.unlock();
+    }
   }
 
   /**
@@ -156,14 +239,8 @@ public class OperatorManagementSystem {
    * @param operatorId the ID of the operator
    */
   public void viewActivities(String operatorId) {
-    // Search for the operator by ID
-    Operator foundOperator = null;
-    for (Operator op : operators) {
-      if (op.getId().equalsIgnoreCase(operatorId)) {
-        foundOperator = op;
-        break;
-      }
-    }
+    // Look up the operator by ID
+    Operator foundOperator = operatorsById.get(foldCase(operatorId));
 
     // If operator is not found, print an error message
     if (foundOperator == null) {
@@ -176,7 +253,7 @@ public class OperatorManagementSystem {
 
     // If no activities are found, print a message and return
     if (activities.isEmpty()) {
-      System.out.println("There are no matching activities found.");
+      Output.println("There are no matching activities found.");
       return;
     }
 
@@ -220,11 +297,38 @@ public class OperatorManagementSystem {
    * @param operatorId the operator offering the activity
    */
   public void createActivity(String activityName, String activityType, String operatorId) {
+    StandardActivity activity =
+        insertActivity(activityName, activityType, operatorId, Output::println);
+
+    // Print confirmation message
+    if (activity != null) {
+      MessageCli.ACTIVITY_CREATED.printMessage(
+          activity.getName(),
+          activity.getId(),
+          activity.getType().toString(),
+          activity.getOperator().getName());
+    }
+  }
+
+  /**
+   * Validates and creates an activity exactly like {@link #createActivity(String, String,
+   * String)}, but hands any rejection message to the caller instead of printing it and prints
+   * nothing on success.
+   *
+   * @param activityName the activity name
+   * @param activityType the activity type (as string)
+   * @param operatorId the operator offering the activity
+   * @param rejected receives the message explaining why the activity was not created
+   * @return the new activity, or null if it was rejected
+   */
+  StandardActivity insertActivity(
+      String activityName, String activityType, String operatorId, Consumer<String> rejected) {
     // Trim and validate the activity name
     activityName = activityName.trim();
     if (activityName.length() < 3) {
-      MessageCli.ACTIVITY_NOT_CREATED_INVALID_ACTIVITY_NAME.printMessage(activityName);
-      return;
+      rejected.accept(
+          MessageCli.ACTIVITY_NOT_CREATED_INVALID_ACTIVITY_NAME.getMessage(activityName));
+      return null;
     }
 
     // Parse and validate the activity type
@@ -233,32 +337,24 @@ public class OperatorManagementSystem {
       type = ActivityType.OTHER;
     }
 
-    // Search for the operator by ID
-    Operator foundOperator = null;
-    for (Operator op : operators) {
-      if (op.getId().equalsIgnoreCase(operatorId)) {
-        foundOperator = op;
-        break;
-      }
-    }
+    // Look up the operator by ID
+    Operator foundOperator = operatorsById.get(foldCase(operatorId));
 
     // If operator is not found, print an error message
     if (foundOperator == null) {
-      MessageCli.ACTIVITY_NOT_CREATED_INVALID_OPERATOR_ID.printMessage(operatorId);
-      return;
+      rejected.accept(MessageCli.ACTIVITY_NOT_CREATED_INVALID_OPERATOR_ID.getMessage(operatorId));
+      return null;
     }
 
-    // Generate the activity's unique ID
-    int activityCount = foundOperator.getActivities().size() + 1;
-    String activityId = String.format("%s-%03d", operatorId, activityCount);
-
-    // Create and add the new activity
-    StandardActivity activity = new StandardActivity(activityName, type, activityId, foundOperator);
-    foundOperator.addActivity(activity);
-
-    // Print confirmation message
-    MessageCli.ACTIVITY_CREATED.printMessage(
-        activityName, activityId, type.toString(), foundOperator.getName());
+    // Generate the activity's unique ID and add the activity while no other can be numbered
+    synchronized (foundOperator) {
+      int activityCount = foundOperator.getActivityCount() + 1;
+      String activityId = IdGenerator.activityId(operatorId, activityCount);
+      StandardActivity activity =
+          new StandardActivity(activityName, type, activityId, foundOperator);
+      registerActivity(activity);
+      return activity;
+    }
   }
 
   /**
@@ -272,32 +368,26 @@ public class OperatorManagementSystem {
     keyword = keyword.trim().toLowerCase();
     List<StandardActivity> matches = new ArrayList<>();
 
-    // Iterate through all operators and their activities
-    for (Operator op : operators) {
-      for (Activity act : op.getActivities()) {
-        // Cast the activity to StandardActivity for access to specific methods
-        StandardActivity sa = (StandardActivity) act;
-
-        // Retrieve and normalize searchable fields
-        String name = sa.getName().toLowerCase();
-        String type = sa.getType().toString().toLowerCase();
-        String location = sa.getOperator().getLocation().getFullName().toLowerCase();
-        String abbrev = sa.getOperator().getLocation().getLocationAbbreviation().toLowerCase();
-
-        // Check if the keyword matches any of the fields or is a wildcard
-        if (keyword.equals("*")
-            || name.contains(keyword)
-            || type.contains(keyword)
-            || location.contains(keyword)
-            || abbrev.contains(keyword)) {
-          matches.add(sa); // Add matching activity to the results
+    if (keyword.equals("*")) {
+      // The wildcard lists every activity of every operator
+      for (Operator op : getOperators()) {
+        for (Activity act : op.getActivities()) {
+          matches.add((StandardActivity) act);
         }
       }
+    } else {
+      // Use the search index to match on name, type or location, in listing order
+      indexLock.readLock().lock();
+      try {
+        matches.addAll(activitySearchIndex.search(keyword));
+      } finally {
+        indexLock.readLock().unlock();
+      }
     }
 
     // If no matches are found, print a message and return
     if (matches.isEmpty()) {
-      System.out.println("There are no matching activities found.");
+      Output.println("There are no matching activities found.");
       return;
     }
 
@@ -336,9 +426,26 @@ public class OperatorManagementSystem {
    * @param options the review options array (expected: [author, rating, review text])
    */
   public void addPublicReview(String activityId, String[] options) {
+    Review review = insertPublicReview(activityId, options, Output::println);
+    printReviewAdded("Public", review, activityId);
+  }
+
+  /**
+   * Validates and adds a public review exactly like {@link #addPublicReview(String, String[])},
+   * but hands any rejection message to the caller instead of printing it and prints nothing on
+   * success.
+   * A wrong number of options is turned away without a message, as the command itself does, so
+   * callers must check the count first.
+   *
+   * @param activityId the ID of the activity to review
+   * @param options the review options array (expected: [author, anonymous, rating, review text])
+   * @param rejected receives the message explaining why the review was not added
+   * @return the new review, or null if it was not added
+   */
+  Review insertPublicReview(String activityId, String[] options, Consumer<String> rejected) {
     // Check that the correct number of parameters is provided
     if (options.length != 4) { // expected: author, anonymous (ignored), rating, review text
-      return;
+      return null;
     }
 
     // Extract and clean inputs
@@ -359,29 +466,23 @@ public class OperatorManagementSystem {
       author = "Anonymous";
     }
 
-    // Search for the activity across all operators
-    for (Operator op : operators) {
-      for (Activity act : op.getActivities()) {
-        if (act.getId().equalsIgnoreCase(activityId)) {
-          // Cast to StandardActivity since only those have reviews
-          StandardActivity activity = (StandardActivity) act;
-
-          // Generate a new review ID
-          String reviewId = String.format("%s-R%d", activityId, activity.getReviews().size() + 1);
-
-          // Create and add the PublicReview
-          PublicReview review = new PublicReview(reviewId, rating, author, text);
-          activity.addReview(review);
+    // Look up the activity by ID
+    StandardActivity activity = activitiesById.get(foldCase(activityId));
 
-          // Show success message
-          MessageCli.REVIEW_ADDED.printMessage("Public", reviewId, activity.getName());
-          return;
-        }
-      }
+    // If activity not found, show error
+    if (activity == null) {
+      rejected.accept(MessageCli.REVIEW_NOT_ADDED_INVALID_ACTIVITY_ID.getMessage(activityId));
+      return null;
     }
 
-    // If activity not found, show error
-    MessageCli.REVIEW_NOT_ADDED_INVALID_ACTIVITY_ID.printMessage(activityId);
+    // Number the review from the activity's sequence and add the PublicReview
+    String reviewAuthor = author;
+    int reviewRating = rating;
+    return registerReview(
+        activity,
+        sequence ->
+            new PublicReview(
+                IdGenerator.reviewId(activityId, sequence), reviewRating, reviewAuthor, text));
   }
 
   /**
@@ -392,12 +493,27 @@ public class OperatorManagementSystem {
    * @param options the options including rating, author, and text
    */
   public void addPrivateReview(String activityId, String[] options) {
+    Review review = insertPrivateReview(activityId, options, Output::println);
+    printReviewAdded("Private", review, activityId);
+  }
+
+  /**
+   * Validates and adds a private review exactly like {@link #addPrivateReview(String, String[])},
+   * but hands any rejection message to the caller instead of printing it and prints nothing on
+   * success.
+   *
+   * @param activityId the ID of the activity being reviewed
+   * @param options the options including rating, author, and text
+   * @param rejected receives the message explaining why the review was not added
+   * @return the new review, or null if it was not added
+   */
+  Review insertPrivateReview(String activityId, String[] options, Consumer<String> rejected) {
     // Validate input parameters
     if (options == null
         || options.length
             != 5) { // expected: author, contact (ignored), rating, text, resolved (ignored)
-      MessageCli.REVIEW_NOT_ADDED_INVALID_ACTIVITY_ID.printMessage(activityId);
-      return;
+      rejected.accept(MessageCli.REVIEW_NOT_ADDED_INVALID_ACTIVITY_ID.getMessage(activityId));
+      return null;
     }
 
     // Extract and clean inputs
@@ -412,8 +528,8 @@ public class OperatorManagementSystem {
     try {
       rating = Integer.parseInt(ratingStr);
     } catch (NumberFormatException e) {
-      MessageCli.REVIEW_NOT_ADDED_INVALID_ACTIVITY_ID.printMessage(activityId);
-      return;
+      rejected.accept(MessageCli.REVIEW_NOT_ADDED_INVALID_ACTIVITY_ID.getMessage(activityId));
+      return null;
     }
 
     // Adjust rating if it is out of bounds
@@ -423,42 +539,28 @@ public class OperatorManagementSystem {
       rating = 5;
     }
 
-    // Find the activity
-    StandardActivity targetActivity = null;
-    for (Operator op : operators) {
-      for (Activity act : op.getActivities()) {
-        if (act.getId().equalsIgnoreCase(activityId) && act instanceof StandardActivity) {
-          targetActivity = (StandardActivity) act;
-          break;
-        }
-      }
-      if (targetActivity != null) {
-        break;
-      }
-    }
+    // Look up the activity by ID
+    StandardActivity targetActivity = activitiesById.get(foldCase(activityId));
 
     // If activity not found, show error
     if (targetActivity == null) {
-      MessageCli.REVIEW_NOT_ADDED_INVALID_ACTIVITY_ID.printMessage(activityId);
-      return;
+      rejected.accept(MessageCli.REVIEW_NOT_ADDED_INVALID_ACTIVITY_ID.getMessage(activityId));
+      return null;
     }
 
-    // Generate a unique ID for the review
-    String reviewId = String.format("%s-R%d", activityId, targetActivity.getReviews().size() + 1);
-
-    // Create and add the review
-    PrivateReview review =
-        new PrivateReview(
-            reviewId,
-            rating,
-            author,
-            text,
-            contact,
-            followupOption.equals("y") || followupOption.equals("yes"));
-    targetActivity.addReview(review);
-
-    // Output confirmation
-    MessageCli.REVIEW_ADDED.printMessage("Private", reviewId, targetActivity.getName());
+    // Number the review from the activity's sequence and add it
+    int reviewRating = rating;
+    boolean followUp = followupOption.equals("y") || followupOption.equals("yes");
+    return registerReview(
+        targetActivity,
+        sequence ->
+            new PrivateReview(
+                IdGenerator.reviewId(activityId, sequence),
+                reviewRating,
+                author,
+                text,
+                contact,
+                followUp));
   }
 
   /**
@@ -470,9 +572,26 @@ public class OperatorManagementSystem {
    * @param options an array with [author, rating, text, recommended]
    */
   public void addExpertReview(String activityId, String[] options) {
+    Review review = insertExpertReview(activityId, options, Output::println);
+    printReviewAdded("Expert", review, activityId);
+  }
+
+  /**
+   * Validates and adds an expert review exactly like {@link #addExpertReview(String, String[])},
+   * but hands any rejection message to the caller instead of printing it and prints nothing on
+   * success.
+   * A wrong number of options is turned away without a message, as the command itself does, so
+   * callers must check the count first.
+   *
+   * @param activityId the ID of the activity being reviewed
+   * @param options an array with [author, rating, text, recommended]
+   * @param rejected receives the message explaining why the review was not added
+   * @return the new review, or null if it was not added
+   */
+  Review insertExpertReview(String activityId, String[] options, Consumer<String> rejected) {
     // Validate that 4 fields are provided
     if (options.length != 4) { // expected: author, rating, text, recommended
-      return;
+      return null;
     }
 
     // Extract and clean the inputs
@@ -489,28 +608,40 @@ public class OperatorManagementSystem {
       rating = 5;
     }
 
-    // Search for the activity
-    for (Operator op : operators) {
-      for (Activity act : op.getActivities()) {
-        if (act.getId().equalsIgnoreCase(activityId)) {
-          StandardActivity activity = (StandardActivity) act;
+    // Look up the activity by ID
+    StandardActivity activity = activitiesById.get(foldCase(activityId));
 
-          // Generate the review ID
-          String reviewId = String.format("%s-R%d", activityId, activity.getReviews().size() + 1);
+    // If the activity isn't found, print an error
+    if (activity == null) {
+      rejected.accept(MessageCli.REVIEW_NOT_ADDED_INVALID_ACTIVITY_ID.getMessage(activityId));
+      return null;
+    }
 
-          // Create and add the expert review
-          ExpertReview review = new ExpertReview(reviewId, rating, author, text, recommended);
-          activity.addReview(review);
+    // Number the review from the activity's sequence and add the expert review
+    int reviewRating = rating;
+    return registerReview(
+        activity,
+        sequence ->
+            new ExpertReview(
+                IdGenerator.reviewId(activityId, sequence),
+                reviewRating,
+                author,
+                text,
+                recommended));
+  }
 
-          // Show confirmation
-          MessageCli.REVIEW_ADDED.printMessage("Expert", reviewId, activity.getName());
-          return;
-        }
-      }
+  /**
+   * Confirms that a review was added, if it was.
+   *
+   * @param kind the kind of review, as shown in the confirmation
+   * @param review the added review, or null if it was not added
+   * @param activityId the ID of the reviewed activity
+   */
+  private void printReviewAdded(String kind, Review review, String activityId) {
+    if (review != null) {
+      String activityName = findActivity(activityId).getName();
+      MessageCli.REVIEW_ADDED.printMessage(kind, review.getId(), activityName);
     }
-
-    // If the activity isn't found, print an error
-    MessageCli.REVIEW_NOT_ADDED_INVALID_ACTIVITY_ID.printMessage(activityId);
   }
 
   /**
@@ -520,20 +651,8 @@ public class OperatorManagementSystem {
    * @param activityId the ID of the activity whose reviews will be shown
    */
   public void displayReviews(String activityId) {
-    StandardActivity targetActivity = null;
-
-    // Find the target activity by ID
-    for (Operator operator : operators) {
-      for (Activity activity : operator.getActivities()) {
-        if (activity.getId().equalsIgnoreCase(activityId) && activity instanceof StandardActivity) {
-          targetActivity = (StandardActivity) activity;
-          break;
-        }
-      }
-      if (targetActivity != null) {
-        break;
-      }
-    }
+    // Look up the target activity by ID
+    StandardActivity targetActivity = activitiesById.get(foldCase(activityId));
 
     // If no such activity is found, print error
     if (targetActivity == null) {
@@ -545,7 +664,7 @@ public class OperatorManagementSystem {
 
     // If there are no reviews
     if (reviews.isEmpty()) {
-      System.out.println("There are no reviews for activity '" + targetActivity.getName() + "'.");
+      Output.println("There are no reviews for activity '" + targetActivity.getName() + "'.");
       return;
     }
 
@@ -613,28 +732,8 @@ public class OperatorManagementSystem {
    * @param reviewId the ID of the review to endorse
    */
   public void endorseReview(String reviewId) {
-    Review targetReview = null;
-
-    // Look through all reviews in all activities across all operators
-    for (Operator operator : operators) {
-      for (Activity activity : operator.getActivities()) {
-        if (activity instanceof StandardActivity) {
-          List<Review> reviews = ((StandardActivity) activity).getReviews();
-          for (Review review : reviews) {
-            if (review.getId().equalsIgnoreCase(reviewId)) {
-              targetReview = review;
-              break;
-            }
-          }
-        }
-        if (targetReview != null) {
-          break;
-        }
-      }
-      if (targetReview != null) {
-        break;
-      }
-    }
+    // Look up the review by ID
+    Review targetReview = reviewsById.get(foldCase(reviewId));
 
     // If not found, show error
     if (targetReview == null) {
@@ -650,7 +749,16 @@ public class OperatorManagementSystem {
 
     // Endorse it and show success message
     PublicReview publicReview = (PublicReview) targetReview;
-    publicReview.endorse();
+    mutationLock.readLock().lock();
+    try {
+      WriteAheadLog currentLog = log;
+      if (currentLog != null) {
+        currentLog.reviewEndorsed(publicReview);
+      }
+      publicReview.endorse();
+    } finally {
+      mutationLock.readLock().unlock();
+    }
     MessageCli.REVIEW_ENDORSED.printMessage(reviewId);
   }
 
@@ -661,28 +769,8 @@ public class OperatorManagementSystem {
    * @param response the resolution message to attach
    */
   public void resolveReview(String reviewId, String response) {
-    Review targetReview = null;
-
-    // Search for the review across all operators and their activities
-    for (Operator operator : operators) {
-      for (Activity activity : operator.getActivities()) {
-        if (activity instanceof StandardActivity) {
-          List<Review> reviews = ((StandardActivity) activity).getReviews();
-          for (Review review : reviews) {
-            if (review.getId().equalsIgnoreCase(reviewId)) {
-              targetReview = review;
-              break;
-            }
-          }
-        }
-        if (targetReview != null) {
-          break;
-        }
-      }
-      if (targetReview != null) {
-        break;
-      }
-    }
+    // Look up the review by ID
+    Review targetReview = reviewsById.get(foldCase(reviewId));
 
     // If review not found
     if (targetReview == null) {
@@ -700,8 +788,20 @@ public class OperatorManagementSystem {
     String finalResponse = (response == null || response.trim().isEmpty()) ? "-" : response.trim();
 
     // Set resolution and print confirmation
+    // Resolutions are logged in the order they are applied, so replay keeps the latest one
     PrivateReview privateReview = (PrivateReview) targetReview;
-    privateReview.resolve(finalResponse);
+    mutationLock.readLock().lock();
+    try {
+      synchronized (privateReview) {
+        WriteAheadLog currentLog = log;
+        if (currentLog != null) {
+          currentLog.reviewResolved(privateReview, finalResponse);
+        }
+        privateReview.resolve(finalResponse);
+      }
+    } finally {
+      mutationLock.readLock().unlock();
+    }
 
     // Print the exact expected message
     MessageCli.REVIEW_RESOLVED.printMessage(reviewId, finalResponse);
@@ -715,30 +815,8 @@ public class OperatorManagementSystem {
    * @param imageName the name of the image to upload
    */
   public void uploadReviewImage(String reviewId, String imageName) {
-    Review targetReview = null;
-
-    // Search for the review by ID across all operators and their activities
-    for (Operator operator : operators) {
-      for (Activity activity : operator.getActivities()) {
-        if (activity instanceof StandardActivity) {
-          List<Review> reviews = ((StandardActivity) activity).getReviews();
-          for (Review review : reviews) {
-            if (review.getId().equalsIgnoreCase(reviewId)) {
-              targetReview = review;
-              break;
-            }
-          }
-        }
-        // Break inner loop if review is found
-        if (targetReview != null) {
-          break;
-        }
-      }
-      // Break outer loop if review is found
-      if (targetReview != null) {
-        break;
-      }
-    }
+    // Look up the review by ID
+    Review targetReview = reviewsById.get(foldCase(reviewId));
 
     // Handle review not found
     if (targetReview == null) {
@@ -753,56 +831,274 @@ public class OperatorManagementSystem {
     }
 
     // Upload the image to the expert review
+    // Images are logged in the order they are added, so replay keeps them in order
     ExpertReview expertReview = (ExpertReview) targetReview;
-    expertReview.addImage(imageName);
+    mutationLock.readLock().lock();
+    try {
+      synchronized (expertReview) {
+        WriteAheadLog currentLog = log;
+        if (currentLog != null) {
+          currentLog.reviewImageUploaded(expertReview, imageName);
+        }
+        expertReview.addImage(imageName);
+      }
+    } finally {
+      mutationLock.readLock().unlock();
+    }
 
     //  Confirm upload to the user
     MessageCli.REVIEW_IMAGE_ADDED.printMessage(imageName, reviewId);
   }
 
   /**
-   * Displays the top reviewed activity in each location based on average rating. If no reviewed
-   * activities exist in a location, a message is printed for that location.
+   * Displays the top reviewed activity in each location based on the average of its public and
+   * expert ratings. If no reviewed activities exist in a location, a message is printed for that
+   * location.
    */
   public void displayTopActivities() {
     // Go through each unique location in the system
     for (Location loc : Location.values()) {
-      List<StandardActivity> reviewedInLoc = new ArrayList<>();
-
-      // Find reviewed activities for this location
-      for (Operator op : operators) {
-        if (op.getLocation().equals(loc)) {
-          for (Activity act : op.getActivities()) {
-            StandardActivity sa = (StandardActivity) act;
-            for (Review review : sa.getReviews()) {
-              if (review instanceof PublicReview || review instanceof ExpertReview) {
-                reviewedInLoc.add(sa);
-                break;
-              }
-            }
-          }
-        }
-      }
+      // Read the highest-rated activity in this location from the leaderboard
+      ActivityLeaderboard.Entry top = leaderboard.top(loc);
 
       // If no reviewed activities in this location
-      if (reviewedInLoc.isEmpty()) {
+      if (top == null) {
         MessageCli.NO_REVIEWED_ACTIVITIES.printMessage(loc.getFullName());
         continue;
       }
 
-      // Find the highest-rated activity in this location
-      StandardActivity topActivity = reviewedInLoc.get(0);
-      for (StandardActivity sa : reviewedInLoc) {
-        if (sa.getAverageRating() > topActivity.getAverageRating()) {
-          topActivity = sa;
-        }
-      }
-
       // Print the top activity message
       String locationName = loc.getFullName();
-      String activityName = topActivity.getName();
-      String avg = String.format("%.2f", topActivity.getAverageRating());
+      String activityName = top.getActivity().getName();
+      String avg = String.format("%.2f", top.getAverage());
       MessageCli.TOP_ACTIVITY.printMessage(locationName, activityName, avg);
     }
   }
+
+  /**
+   * Returns the best rated activities in a location based on the average of their public and expert
+   * ratings, optionally restricted to a single activity type. The result is read from the
+   * incrementally maintained leaderboard, so only the returned activities are visited.
+   *
+   * @param location the location to rank activities in
+   * @param type the activity type to restrict to, or null to include every type
+   * @param k the maximum number of activities to return
+   * @return up to k ranked activities with their averages, best first
+   */
+  public List<ActivityLeaderboard.Entry> getTopActivities(
+      Location location, ActivityType type, int k) {
+    return leaderboard.top(location, type, k);
+  }
+
+  /**
+   * Returns every operator in creation order, each with its activities and their reviews.
+   *
+   * @return a read-only copy of the operator list
+   */
+  public List<Operator> getOperators() {
+    indexLock.readLock().lock();
+    try {
+      return List.copyOf(operators);
+    } finally {
+      indexLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the log that successful mutations are recorded in.
+   *
+   * @return the write-ahead log, or null if mutations are not logged
+   */
+  public WriteAheadLog getWriteAheadLog() {
+    return log;
+  }
+
+  /**
+   * Starts recording every successful mutation in a write-ahead log. The log should already have
+   * been recovered into this system.
+   *
+   * @param log the log to record mutations in, or null to stop logging
+   */
+  public void setWriteAheadLog(WriteAheadLog log) {
+    this.log = log;
+  }
+
+  /**
+   * Saves a snapshot of the system. With a write-ahead log attached, the snapshot covers every
+   * record in the log and the log starts its next generation. Mutations wait while the snapshot is
+   * written, and every mutation that started before it is either fully included or not at all.
+   *
+   * @param snapshotFile the snapshot file to write
+   * @throws IOException if the snapshot or the log cannot be written
+   */
+  public void checkpoint(Path snapshotFile) throws IOException {
+    mutationLock.writeLock().lock();
+    try {
+      WriteAheadLog currentLog = log;
+      if (currentLog != null) {
+        currentLog.checkpoint(this, snapshotFile);
+      } else {
+        SnapshotStore.save(this, snapshotFile);
+      }
+    } finally {
+      mutationLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Looks up an operator by its ID, ignoring case.
+   *
+   * @param operatorId the operator ID
+   * @return the operator, or null if there is none with that ID
+   */
+  Operator findOperator(String operatorId) {
+    return operatorsById.get(foldCase(operatorId));
+  }
+
+  /**
+   * Looks up an activity by its ID, ignoring case.
+   *
+   * @param activityId the activity ID
+   * @return the activity, or null if there is none with that ID
+   */
+  StandardActivity findActivity(String activityId) {
+    return activitiesById.get(foldCase(activityId));
+  }
+
+  /**
+   * Looks up a review by its ID, ignoring case.
+   *
+   * @param reviewId the review ID
+   * @return the review, or null if there is none with that ID
+   */
+  Review findReview(String reviewId) {
+    return reviewsById.get(foldCase(reviewId));
+  }
+
+  /**
+   * Adds an operator to the system and to every index, and records it in the write-ahead log.
+   * Operators must be registered in creation order, since their position and the per-location
+   * count both follow that order. The operator only becomes visible by ID once it is fully
+   * indexed.
+   *
+   * @param operator the operator to add, with no activities yet
+   */
+  void registerOperator(Operator operator) {
+    Location loc = operator.getLocation();
+    ReentrantLock locationLock = locationLocks.get(loc);
+    locationLock.lock();
+    mutationLock.readLock().lock();
+    try {
+      // Logged first and under the location lock alone, so each location's operators are logged in
+      // ID order, a failed write (which the log rolls back) leaves no trace and a slow one holds up
+      // no other location. Two operators created at once in different locations may therefore
+      // swap places on replay.
+      WriteAheadLog currentLog = log;
+      if (currentLog != null) {
+        currentLog.operatorCreated(operator);
+      }
+
+      operatorNamesByLocation.get(loc).add(foldCase(operator.getName()));
+      operatorCountsByLocation.merge(loc, 1, Integer::sum);
+
+      indexLock.writeLock().lock();
+      try {
+        operators.add(operator);
+        operatorSearchIndex.add(operator);
+        activitySearchIndex.addOperator(operator);
+      } finally {
+        indexLock.writeLock().unlock();
+      }
+
+      operatorsById.putIfAbsent(foldCase(operator.getId()), operator);
+    } finally {
+      mutationLock.readLock().unlock();
+      locationLock.unlock();
+    }
+  }
+
+  /**
+   * Adds an activity to its operator and to every index, and records it in the write-ahead log.
+   * Activities must be registered in creation order. The activity only becomes visible by ID once
+   * it is fully indexed.
+   *
+   * @param activity the activity to add, with no reviews yet
+   */
+  void registerActivity(StandardActivity activity) {
+    Operator operator = activity.getOperator();
+    synchronized (operator) {
+      mutationLock.readLock().lock();
+      try {
+        WriteAheadLog currentLog = log;
+        if (currentLog != null) {
+          currentLog.activityCreated(activity);
+        }
+
+        indexLock.writeLock().lock();
+        try {
+          leaderboard.addActivity(activity, activitySearchIndex.addActivity(activity));
+        } finally {
+          indexLock.writeLock().unlock();
+        }
+
+        operator.addActivity(activity);
+        activitiesById.putIfAbsent(foldCase(activity.getId()), activity);
+      } finally {
+        mutationLock.readLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Adds an already numbered review to an activity, re-ranks the activity and indexes the review
+   * by its ID. Reviews must be registered in the order they were numbered.
+   *
+   * @param activity the reviewed activity
+   * @param review the review to add
+   */
+  void registerReview(StandardActivity activity, Review review) {
+    registerReview(activity, sequence -> review);
+  }
+
+  /**
+   * Numbers and adds a new review to an activity, records it in the write-ahead log, re-ranks the
+   * activity and indexes the review by its ID. Without a log only the shared side of the mutation
+   * lock is taken; with one, the review is numbered while appending to the log, so the log lists
+   * each activity's reviews in sequence order.
+   *
+   * @param activity the reviewed activity
+   * @param newReview builds the review from its sequence number within the activity
+   * @return the added review
+   */
+  Review registerReview(StandardActivity activity, IntFunction<Review> newReview) {
+    Review review;
+    mutationLock.readLock().lock();
+    try {
+      WriteAheadLog currentLog = log;
+      review =
+          currentLog == null
+              ? activity.addReview(newReview)
+              : currentLog.reviewAdded(activity, newReview);
+    } finally {
+      mutationLock.readLock().unlock();
+    }
+    leaderboard.update(activity);
+    reviewsById.putIfAbsent(foldCase(review.getId()), review);
+    return review;
+  }
+
+  /**
+   * Folds a name or ID into the key used by the lookup indexes. Two strings produce the same key
+   * exactly when they are equal according to {@link String#equalsIgnoreCase(String)}.
+   *
+   * @param text the string to fold
+   * @return the case-folded string
+   */
+  private static String foldCase(String text) {
+    char[] chars = text.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+    }
+    return new String(chars);
+  }
 }
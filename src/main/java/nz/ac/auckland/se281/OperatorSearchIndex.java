@@ -0,0 +1,55 @@
+package nz.ac.auckland.se281;
+
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import nz.ac.auckland.se281.Types.Location;
+
+/**
+ * Incrementally maintained search index over operators. Operator names are held in an n-gram index
+ * and operators are grouped by location, so a keyword search only touches operators that can
+ * actually match. Operators are identified by their position in the order they were added.
+ */
+public class OperatorSearchIndex {
+
+  /** Substring index over the lowercase operator names. */
+  private NgramIndex names = new NgramIndex();
+
+  /** Positions of the operators based in each location. */
+  private Map<Location, BitSet> operatorsByLocation = new EnumMap<>(Location.class);
+
+  /**
+   * Adds an operator to the index. Operators must be added in the same order as they are stored in
+   * the system.
+   *
+   * @param operator the operator to index
+   */
+  public void add(Operator operator) {
+    int position = names.add(operator.getName().toLowerCase());
+    operatorsByLocation.computeIfAbsent(operator.getLocation(), loc -> new BitSet()).set(position);
+  }
+
+  /**
+   * Finds the operators whose name, location name or location abbreviation contains the keyword.
+   *
+   * @param keyword the trimmed, lowercase search term
+   * @return the positions of the matching operators
+   */
+  public BitSet search(String keyword) {
+    BitSet matches = new BitSet(names.size());
+
+    // Match the keyword against operator names
+    names.collectMatches(keyword, matches);
+
+    // Match the keyword against each location and include all operators based there
+    for (Map.Entry<Location, BitSet> entry : operatorsByLocation.entrySet()) {
+      Location loc = entry.getKey();
+      if (loc.getFullName().toLowerCase().contains(keyword)
+          || loc.getLocationAbbreviation().toLowerCase().contains(keyword)) {
+        matches.or(entry.getValue());
+      }
+    }
+
+    return matches;
+  }
+}
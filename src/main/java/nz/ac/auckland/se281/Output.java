@@ -0,0 +1,77 @@
+package nz.ac.auckland.se281;
+
+/**
+ * Entry point for everything the application prints. Messages, listings and prompts are written
+ * through the current {@link OutputSink}, which by default prints each line straight to the
+ * console. Setting the system property {@code oms.bufferedOutput} to {@code true} switches the
+ * default to a buffered console sink that writes once per command.
+ *
+ * <p>A thread can also route its own output to a different sink, which is how each network session
+ * writes to its own connection while sharing one system with every other session.
+ */
+public class Output {
+
+  private static OutputSink sink = new ConsoleSink(Boolean.getBoolean("oms.bufferedOutput"));
+
+  /** Sink that overrides the shared one for the current thread, if any. */
+  private static final ThreadLocal<OutputSink> threadSink = new ThreadLocal<>();
+
+  private Output() {}
+
+  /**
+   * Returns the sink that output from the current thread is written to.
+   *
+   * @return the current thread's sink, or the shared sink if the thread has none of its own
+   */
+  public static OutputSink getSink() {
+    OutputSink own = threadSink.get();
+    return own != null ? own : sink;
+  }
+
+  /**
+   * Replaces the sink that output is written to. Anything collected by the previous sink is flushed
+   * first.
+   *
+   * @param newSink the sink to write to from now on
+   */
+  public static void setSink(OutputSink newSink) {
+    sink.flush();
+    sink = newSink;
+  }
+
+  /**
+   * Routes output from the current thread to its own sink instead of the shared one.
+   *
+   * @param newSink the sink for this thread, or null to go back to the shared sink
+   */
+  public static void setThreadSink(OutputSink newSink) {
+    if (newSink == null) {
+      threadSink.remove();
+    } else {
+      threadSink.set(newSink);
+    }
+  }
+
+  /**
+   * Writes text without a trailing line separator.
+   *
+   * @param text the text to write
+   */
+  public static void print(String text) {
+    getSink().print(text);
+  }
+
+  /**
+   * Writes a line of text.
+   *
+   * @param line the line to write
+   */
+  public static void println(String line) {
+    getSink().println(line);
+  }
+
+  /** Flushes the current sink. */
+  public static void flush() {
+    getSink().flush();
+  }
+}
@@ -0,0 +1,25 @@
+package nz.ac.auckland.se281;
+
+/**
+ * Destination for the text printed by the system. Implementations decide whether text is written
+ * immediately or collected and written in larger chunks when {@link #flush()} is called.
+ */
+public interface OutputSink {
+
+  /**
+   * Writes text without a trailing line separator.
+   *
+   * @param text the text to write
+   */
+  void print(String text);
+
+  /**
+   * Writes a line of text followed by the platform line separator.
+   *
+   * @param line the line to write
+   */
+  void println(String line);
+
+  /** Writes out anything that has been collected so far. */
+  void flush();
+}
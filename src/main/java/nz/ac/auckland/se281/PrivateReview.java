@@ -1,9 +1,11 @@
 package nz.ac.auckland.se281;
 
+import nz.ac.auckland.se281.Types.ReviewType;
+
 /** Represents a private review which can be resolved by the admin with a response. */
 public class PrivateReview extends Review {
   private String text;
-  private String resolution;
+  private volatile String resolution;
   private String contact;
   private boolean followUp;
 
@@ -36,6 +38,16 @@ public class PrivateReview extends Review {
     return "Private";
   }
 
+  /**
+   * Returns the kind of this review.
+   *
+   * @return {@link ReviewType#PRIVATE}
+   */
+  @Override
+  public ReviewType getReviewType() {
+    return ReviewType.PRIVATE;
+  }
+
   /**
    * Returns the review text.
    *
@@ -1,9 +1,11 @@
 package nz.ac.auckland.se281;
 
+import nz.ac.auckland.se281.Types.ReviewType;
+
 /** Represents a public review which can be endorsed by the admin. */
 public class PublicReview extends Review {
   private String text;
-  private boolean endorsed;
+  private volatile boolean endorsed;
 
   /**
    * Constructs a PublicReview with basic fields and the review text.
@@ -29,6 +31,16 @@ public class PublicReview extends Review {
     return "Public";
   }
 
+  /**
+   * Returns the kind of this review.
+   *
+   * @return {@link ReviewType#PUBLIC}
+   */
+  @Override
+  public ReviewType getReviewType() {
+    return ReviewType.PUBLIC;
+  }
+
   /**
    * Returns the textual content of the review.
    *
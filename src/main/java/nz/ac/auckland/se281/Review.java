@@ -1,5 +1,7 @@
 package nz.ac.auckland.se281;
 
+import nz.ac.auckland.se281.Types.ReviewType;
+
 /**
  * Abstract base class for all types of reviews. Stores common fields such as ID, rating, and
  * author.
@@ -56,6 +58,13 @@ public abstract class Review {
    */
   public abstract String getType();
 
+  /**
+   * Returns the kind of review as a {@link ReviewType}.
+   *
+   * @return the review type
+   */
+  public abstract ReviewType getReviewType();
+
   /**
    * Returns the main review content.
    *
@@ -0,0 +1,262 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import nz.ac.auckland.se281.Types.ActivityType;
+import nz.ac.auckland.se281.Types.Location;
+
+/**
+ * Saves and loads the complete state of an {@link OperatorManagementSystem} as a compact binary
+ * snapshot. Operators are written in creation order, each followed by its activities and their
+ * reviews, so loading rebuilds every index and ID counter exactly as they were. Counts and string
+ * lengths are variable-length integers, strings are UTF-8, and both directions stream through a
+ * fixed-size buffer over a file channel.
+ *
+ * <p>A snapshot also records the generation of the {@link WriteAheadLog} whose records it already
+ * contains, so that a log left behind by an interrupted checkpoint is not replayed twice.
+ */
+public class SnapshotStore {
+
+  /** Marks the start of a snapshot file ("OMS" followed by a zero byte). */
+  private static final int MAGIC = 0x4f4d5300;
+
+  /** Version of the layout below, bumped whenever it changes. */
+  private static final int VERSION = 2;
+
+  /** Size of the buffer between the snapshot and the file channel. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private static final byte PUBLIC_REVIEW = 0;
+  private static final byte PRIVATE_REVIEW = 1;
+  private static final byte EXPERT_REVIEW = 2;
+
+  private SnapshotStore() {}
+
+  /**
+   * Writes a snapshot of the system to a file, recording that it covers no write-ahead log.
+   *
+   * @param system the system to save
+   * @param file the snapshot file to write
+   * @throws IOException if the file cannot be written
+   */
+  public static void save(OperatorManagementSystem system, Path file) throws IOException {
+    save(system, file, 0);
+  }
+
+  /**
+   * Writes a snapshot of the system to a file. The snapshot is written to a temporary file next to
+   * the target and moved into place once complete, so an interrupted save never leaves a truncated
+   * snapshot behind.
+   *
+   * @param system the system to save
+   * @param file the snapshot file to write
+   * @param logGeneration the generation of the write-ahead log whose records are all included
+   * @throws IOException if the file cannot be written
+   */
+  public static void save(OperatorManagementSystem system, Path file, long logGeneration)
+      throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+    try (FileChannel channel =
+        FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      BinaryEncoder out = new BinaryEncoder(channel, BUFFER_SIZE);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(logGeneration);
+
+      // Operators in creation order, each followed by its activities and their reviews
+      List<Operator> operators = system.getOperators();
+      out.writeVarInt(operators.size());
+      for (Operator operator : operators) {
+        out.writeString(operator.getName());
+        out.writeByte(operator.getLocation().ordinal());
+        out.writeString(operator.getId());
+
+        List<Activity> activities = operator.getActivities();
+        out.writeVarInt(activities.size());
+        for (Activity activity : activities) {
+          writeActivity(out, (StandardActivity) activity);
+        }
+      }
+
+      out.flush();
+      channel.force(true);
+    }
+
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads a snapshot into a new system.
+   *
+   * @param file the snapshot file to read
+   * @return a system holding the saved operators, activities and reviews
+   * @throws IOException if the file cannot be read or is not a valid snapshot
+   */
+  public static OperatorManagementSystem load(Path file) throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      BinaryDecoder in = new BinaryDecoder(channel, BUFFER_SIZE);
+      readHeader(in, file);
+
+      Location[] locations = Location.values();
+      int operatorCount = in.readVarInt();
+      for (int i = 0; i < operatorCount; i++) {
+        String name = in.readString();
+        Location location = locations[in.readByte()];
+        Operator operator = new Operator(name, location, in.readString());
+        system.registerOperator(operator);
+
+        int activityCount = in.readVarInt();
+        for (int j = 0; j < activityCount; j++) {
+          readActivity(in, system, operator);
+        }
+      }
+    }
+
+    return system;
+  }
+
+  /**
+   * Returns the generation of the write-ahead log whose records a snapshot already contains.
+   *
+   * @param file the snapshot file to read
+   * @return the covered log generation, or 0 if the snapshot covers no log
+   * @throws IOException if the file cannot be read or is not a valid snapshot
+   */
+  public static long readLogGeneration(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return readHeader(new BinaryDecoder(channel, Long.BYTES), file);
+    }
+  }
+
+  private static long readHeader(BinaryDecoder in, Path file) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a snapshot file: " + file);
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported snapshot version " + version + ": " + file);
+    }
+    return in.readLong();
+  }
+
+  private static void writeActivity(BinaryEncoder out, StandardActivity activity)
+      throws IOException {
+    out.writeString(activity.getName());
+    out.writeByte(activity.getType().ordinal());
+    out.writeString(activity.getId());
+
+    List<Review> reviews = activity.getReviews();
+    out.writeVarInt(reviews.size());
+    for (Review review : reviews) {
+      writeReview(out, review);
+    }
+  }
+
+  /**
+   * Writes a review together with its kind and all of its state.
+   *
+   * @param out the encoder to write to
+   * @param review the review to write
+   * @throws IOException if the review cannot be written
+   */
+  static void writeReview(BinaryEncoder out, Review review) throws IOException {
+    // Fields shared by every review, preceded by its kind
+    if (review instanceof PublicReview) {
+      out.writeByte(PUBLIC_REVIEW);
+    } else if (review instanceof PrivateReview) {
+      out.writeByte(PRIVATE_REVIEW);
+    } else {
+      out.writeByte(EXPERT_REVIEW);
+    }
+    out.writeString(review.getId());
+    out.writeByte(review.getRating());
+    out.writeString(review.getAuthor());
+    out.writeString(review.getContent());
+
+    // Fields specific to the kind of review
+    if (review instanceof PublicReview) {
+      out.writeBoolean(((PublicReview) review).isEndorsed());
+    } else if (review instanceof PrivateReview) {
+      PrivateReview pr = (PrivateReview) review;
+      out.writeString(pr.getContact());
+      out.writeBoolean(pr.needsFollowUp());
+      out.writeBoolean(pr.isResolved());
+      if (pr.isResolved()) {
+        out.writeString(pr.getResolution());
+      }
+    } else {
+      ExpertReview er = (ExpertReview) review;
+      out.writeBoolean(er.isRecommended());
+      out.writeVarInt(er.getImages().size());
+      for (String image : er.getImages()) {
+        out.writeString(image);
+      }
+    }
+  }
+
+  private static void readActivity(
+      BinaryDecoder in, OperatorManagementSystem system, Operator operator) throws IOException {
+    String name = in.readString();
+    ActivityType type = ActivityType.values()[in.readByte()];
+    StandardActivity activity = new StandardActivity(name, type, in.readString(), operator);
+    system.registerActivity(activity);
+
+    int reviewCount = in.readVarInt();
+    for (int i = 0; i < reviewCount; i++) {
+      system.registerReview(activity, readReview(in));
+    }
+  }
+
+  /**
+   * Reads a review written by {@link #writeReview(BinaryEncoder, Review)}.
+   *
+   * @param in the decoder to read from
+   * @return the review, not yet added to any activity
+   * @throws IOException if the review cannot be read
+   */
+  static Review readReview(BinaryDecoder in) throws IOException {
+    int kind = in.readByte();
+    String id = in.readString();
+    int rating = in.readByte();
+    String author = in.readString();
+    String text = in.readString();
+
+    switch (kind) {
+      case PUBLIC_REVIEW:
+        PublicReview pub = new PublicReview(id, rating, author, text);
+        if (in.readBoolean()) {
+          pub.endorse();
+        }
+        return pub;
+      case PRIVATE_REVIEW:
+        String contact = in.readString();
+        boolean followUp = in.readBoolean();
+        PrivateReview pr = new PrivateReview(id, rating, author, text, contact, followUp);
+        if (in.readBoolean()) {
+          pr.resolve(in.readString());
+        }
+        return pr;
+      case EXPERT_REVIEW:
+        ExpertReview er = new ExpertReview(id, rating, author, text, in.readBoolean());
+        int imageCount = in.readVarInt();
+        for (int i = 0; i < imageCount; i++) {
+          er.addImage(in.readString());
+        }
+        return er;
+      default:
+        throw new IOException("Unknown review kind " + kind);
+    }
+  }
+}
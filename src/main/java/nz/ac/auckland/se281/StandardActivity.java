@@ -1,16 +1,34 @@
 package nz.ac.auckland.se281;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
 import nz.ac.auckland.se281.Types.ActivityType;
+import nz.ac.auckland.se281.Types.ReviewType;
 
 /**
  * Represents a standard activity created by an operator. Contains references to the operator and
  * inherits basic activity properties. Also stores all reviews related to this activity.
+ *
+ * <p>Without a write-ahead log, reviews can be added from many threads at once without locking.
+ * Each new review takes its sequence number from an atomic counter, so review IDs stay free of
+ * gaps, and is appended to a lock-free list whose readers always see a consistent prefix.
+ *
+ * <p>With a log attached, every review in the system is numbered and added while holding the log
+ * in {@link WriteAheadLog#reviewAdded}, so that each activity's reviews are logged in sequence
+ * order. Review appends are then serialized across all activities, together with the disk flush
+ * whenever a record completes a sync group. Readers are never blocked either way.
  */
 public class StandardActivity extends Activity {
   private Operator operator;
-  private List<Review> reviews;
+  private AppendOnlyList<Review> reviews;
+
+  /**
+   * Running number of reviews (high 32 bits) and sum of their ratings (low 32 bits) for each review
+   * type, indexed by {@link ReviewType#ordinal()}. Packing both into one value lets a single atomic
+   * add update them together.
+   */
+  private AtomicLongArray ratingAggregates = new AtomicLongArray(ReviewType.values().length);
 
   /**
    * Constructs a StandardActivity with the specified name, type, ID, and operator.
@@ -23,7 +41,7 @@ public class StandardActivity extends Activity {
   public StandardActivity(String name, ActivityType type, String id, Operator operator) {
     super(name, type, id);
     this.operator = operator;
-    this.reviews = new ArrayList<>();
+    this.reviews = new AppendOnlyList<>();
   }
 
   /**
@@ -46,46 +64,116 @@ public class StandardActivity extends Activity {
   }
 
   /**
-   * Adds a review to this activity.
+   * Adds a review to this activity and folds its rating into the running aggregates.
    *
    * @param review the review to add
    */
   public void addReview(Review review) {
-    reviews.add(review);
+    addReview(sequence -> review);
+  }
+
+  /**
+   * Numbers and adds a new review. The next sequence number is reserved atomically and passed to
+   * the factory, which builds the review with its ID; the review is then appended in sequence
+   * order even if reviews with later numbers were finished first. The factory must not fail, since
+   * a reserved number that is never filled holds back every review numbered after it.
+   *
+   * @param newReview builds the review from its positive sequence number
+   * @return the added review
+   */
+  public Review addReview(IntFunction<Review> newReview) {
+    int index = reviews.reserve();
+    Review review = newReview.apply(index + 1);
+    reviews.publish(index, review);
+    ratingAggregates.getAndAdd(
+        review.getReviewType().ordinal(), (1L << Integer.SIZE) + review.getRating());
+    return review;
+  }
+
+  /**
+   * Returns the sequence number the next review will be given. It is only stable while the caller
+   * holds a lock that every addition to this activity also holds.
+   *
+   * @return the next positive sequence number
+   */
+  int getNextReviewSequence() {
+    return reviews.size() + 1;
   }
 
   /**
-   * Returns the list of reviews associated with this activity.
+   * Returns the reviews associated with this activity, in the order they were numbered. Reviews
+   * still being added are left out, together with every review numbered after them.
    *
-   * @return list of reviews
+   * @return a read-only copy of the list of reviews
    */
   public List<Review> getReviews() {
-    return reviews;
+    return reviews.snapshot();
   }
 
   /**
-   * Calculates and returns the average rating of all reviews for this activity. Only considers the
-   * numeric rating values from the reviews.
+   * Returns one review without copying the list, for walking reviews in place. Every index below
+   * {@link #getReviewCount(ReviewType...)} with no types is valid.
    *
-   * @return the average rating as a double, or 0.0 if there are no reviews
+   * @param index the zero-based position of the review, in the order they were numbered
+   * @return the review
+   * @throws IndexOutOfBoundsException if no review has been published at that position
    */
-  public double getAverageRating() {
+  public Review getReview(int index) {
+    return reviews.get(index);
+  }
 
-    // Get all reviews for this activity
-    List<Review> reviews = getReviews();
+  /**
+   * Returns the number of reviews of the given types.
+   *
+   * @param types the review types to count; all types are counted if none are given
+   * @return the number of matching reviews
+   */
+  public int getReviewCount(ReviewType... types) {
+    if (types.length == 0) {
+      return reviews.size();
+    }
 
-    // If there are no reviews, return 0.0
-    if (reviews.isEmpty()) {
-      return 0.0;
+    int count = 0;
+    for (ReviewType type : types) {
+      count += (int) (ratingAggregates.get(type.ordinal()) >>> Integer.SIZE);
     }
+    return count;
+  }
 
-    // Sum all the ratings
+  /**
+   * Returns the average rating of all reviews for this activity. Only considers the numeric rating
+   * values from the reviews, and is answered from running aggregates rather than by rescanning
+   * them.
+   *
+   * @return the average rating as a double, or 0.0 if there are no reviews
+   */
+  public double getAverageRating() {
+    return getAverageRating(ReviewType.values());
+  }
+
+  /**
+   * Returns the average rating of the reviews of the given types, answered from the running
+   * aggregates.
+   *
+   * @param types the review types to include
+   * @return the average rating as a double, or 0.0 if there are no matching reviews
+   */
+  public double getAverageRating(ReviewType... types) {
+    // Sum the aggregates of the requested review types
     int total = 0;
-    for (Review review : reviews) {
-      total += review.getRating();
+    int count = 0;
+    for (ReviewType type : types) {
+      long aggregate = ratingAggregates.get(type.ordinal());
+      total += (int) aggregate;
+      count += (int) (aggregate >>> Integer.SIZE);
+    }
+
+    // If there are no matching reviews, return 0.0
+    if (count == 0) {
+      return 0.0;
     }
 
     // Compute and return the average
-    return (double) total / reviews.size();
+    return (double) total / count;
   }
 }
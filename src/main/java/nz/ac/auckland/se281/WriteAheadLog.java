@@ -0,0 +1,517 @@
+package nz.ac.auckland.se281;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntFunction;
+import nz.ac.auckland.se281.Types.ActivityType;
+import nz.ac.auckland.se281.Types.Location;
+
+/**
+ * Append-only log of every successful mutation of an {@link OperatorManagementSystem}, giving
+ * durability between snapshots. Each record holds the exact entity or change that was applied,
+ * including the generated IDs, so replaying the log rebuilds an identical system without
+ * regenerating anything.
+ *
+ * <p>Records are group committed: they collect in a buffer and are written and forced to disk
+ * together once {@code syncEvery} records are pending, when the log is checkpointed, and when it is
+ * closed. A sync interval of 1 forces every record before its command completes; larger intervals
+ * trade the last few records on a crash for far fewer disk flushes.
+ *
+ * <p>Each log file belongs to a generation. A checkpoint saves a snapshot recording the current
+ * generation and then starts the next one with an empty log, so a log whose generation is already
+ * covered by the snapshot is discarded rather than replayed twice.
+ *
+ * <p>A thread inserting many records at once can wrap them in a batch. Its records then never force
+ * a sync on their own; the whole batch is synced once when it ends.
+ *
+ * <p>Appending is safe from any number of threads. Records from concurrent writers are written in
+ * the order their threads acquire the log, and the sync that completes a group covers every record
+ * appended before it.
+ *
+ * <p>A record that cannot be written or forced is rolled back out of the log before the failure
+ * reaches its caller, so the mutation it describes is neither applied nor replayed.
+ */
+public class WriteAheadLog {
+
+  /** Marks the start of a log file ("OMSL"). */
+  private static final int MAGIC = 0x4f4d534c;
+
+  /** Version of the record layout below, bumped whenever it changes. */
+  private static final int VERSION = 1;
+
+  /** Size of the buffer between the log and the file channel. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** Length of the file header: magic, version and generation. */
+  private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+  private static final byte OPERATOR_CREATED = 0;
+  private static final byte ACTIVITY_CREATED = 1;
+  private static final byte REVIEW_ADDED = 2;
+  private static final byte REVIEW_ENDORSED = 3;
+  private static final byte REVIEW_RESOLVED = 4;
+  private static final byte REVIEW_IMAGE_UPLOADED = 5;
+
+  private final Path file;
+  private final FileChannel channel;
+  private final BinaryEncoder out;
+  private final int syncEvery;
+
+  private long generation;
+  private int unsyncedRecords;
+
+  /** Set once a failed record could not be rolled back, after which nothing more is appended. */
+  private IOException failure;
+
+  /** Set for threads inside a batch, whose records are synced when the batch ends. */
+  private final ThreadLocal<Boolean> batching = new ThreadLocal<>();
+
+  /**
+   * Constructs a log over an already open channel. Used by {@link #open(Path, int)}, and by tests
+   * that need a channel which fails on demand.
+   *
+   * @param file the log file, used in messages
+   * @param channel the channel to read and append through
+   * @param syncEvery the number of records to collect before forcing them to disk
+   */
+  WriteAheadLog(Path file, FileChannel channel, int syncEvery) {
+    this.file = file;
+    this.channel = channel;
+    this.out = new BinaryEncoder(channel, BUFFER_SIZE);
+    this.syncEvery = Math.max(1, syncEvery);
+  }
+
+  /**
+   * Opens a log file, creating it if it does not exist. Nothing can be appended until the log has
+   * been recovered with {@link #recover(OperatorManagementSystem, long)}.
+   *
+   * @param file the log file
+   * @param syncEvery the number of records to collect before forcing them to disk
+   * @return the opened log
+   * @throws IOException if the file cannot be opened
+   */
+  public static WriteAheadLog open(Path file, int syncEvery) throws IOException {
+    FileChannel channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    return new WriteAheadLog(file, channel, syncEvery);
+  }
+
+  /**
+   * Replays a log file into a system without changing the file, for tools that only read the
+   * state. A missing log or one already covered by the snapshot replays nothing, and the replay
+   * ends at a record cut short by a crash, but nothing is truncated or rewritten.
+   *
+   * @param file the log file
+   * @param system the system to replay into, freshly created or loaded from a snapshot
+   * @param coveredGeneration the log generation recorded in that snapshot, or 0 if there was none
+   * @return the number of records replayed
+   * @throws IOException if the log cannot be read or holds a record that cannot be applied
+   */
+  public static int replay(Path file, OperatorManagementSystem system, long coveredGeneration)
+      throws IOException {
+    if (!Files.exists(file)) {
+      return 0;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new WriteAheadLog(file, channel, 1).replay(system, coveredGeneration, false);
+    }
+  }
+
+  /**
+   * Replays the log into a system and prepares it for appending. A log whose generation is already
+   * covered by the snapshot the system was loaded from is discarded instead. A record cut short by
+   * a crash ends the replay and is truncated away.
+   *
+   * @param system the system to replay into, freshly created or loaded from a snapshot
+   * @param coveredGeneration the log generation recorded in that snapshot, or 0 if there was none
+   * @return the number of records replayed
+   * @throws IOException if the log cannot be read or holds a record that cannot be applied
+   */
+  public synchronized int recover(OperatorManagementSystem system, long coveredGeneration)
+      throws IOException {
+    return replay(system, coveredGeneration, true);
+  }
+
+  /**
+   * Replays the log into a system.
+   *
+   * @param system the system to replay into
+   * @param coveredGeneration the log generation recorded in the snapshot, or 0 if there was none
+   * @param repair whether to start a fresh generation in place of an empty or covered log and to
+   *     truncate an incomplete record, leaving the log ready for appending
+   * @return the number of records replayed
+   * @throws IOException if the log cannot be read or holds a record that cannot be applied
+   */
+  private int replay(OperatorManagementSystem system, long coveredGeneration, boolean repair)
+      throws IOException {
+    channel.position(0);
+    BinaryDecoder in = new BinaryDecoder(channel, BUFFER_SIZE);
+
+    // An empty or already covered log is replaced by a fresh generation
+    if (channel.size() < HEADER_SIZE) {
+      if (repair) {
+        startGeneration(coveredGeneration + 1);
+      }
+      return 0;
+    }
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a write-ahead log file: " + file);
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported write-ahead log version " + version + ": " + file);
+    }
+    generation = in.readLong();
+    if (generation <= coveredGeneration) {
+      if (repair) {
+        startGeneration(coveredGeneration + 1);
+      }
+      return 0;
+    }
+
+    // Apply records up to the end of the log or the first incomplete record
+    int replayed = 0;
+    long end = in.position();
+    try {
+      while (!in.atEnd()) {
+        applyRecord(in, system);
+        replayed++;
+        end = in.position();
+      }
+    } catch (EOFException e) {
+      System.err.println(
+          (repair ? "Discarding" : "Ignoring")
+              + " incomplete write-ahead log record at offset "
+              + end
+              + " of "
+              + file);
+    }
+
+    if (repair) {
+      channel.truncate(end);
+      channel.position(end);
+    }
+    return replayed;
+  }
+
+  /**
+   * Returns the generation of the current log file.
+   *
+   * @return the log generation
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Records the creation of an operator.
+   *
+   * @param operator the created operator
+   * @throws UncheckedIOException if the record cannot be written
+   */
+  public synchronized void operatorCreated(Operator operator) {
+    long start = beginRecord();
+    try {
+      out.writeByte(OPERATOR_CREATED);
+      out.writeString(operator.getName());
+      out.writeByte(operator.getLocation().ordinal());
+      out.writeString(operator.getId());
+      recordWritten();
+    } catch (IOException e) {
+      throw recordFailed(start, e);
+    }
+  }
+
+  /**
+   * Records the creation of an activity.
+   *
+   * @param activity the created activity
+   * @throws UncheckedIOException if the record cannot be written
+   */
+  public synchronized void activityCreated(StandardActivity activity) {
+    long start = beginRecord();
+    try {
+      out.writeByte(ACTIVITY_CREATED);
+      out.writeString(activity.getOperator().getId());
+      out.writeString(activity.getName());
+      out.writeByte(activity.getType().ordinal());
+      out.writeString(activity.getId());
+      recordWritten();
+    } catch (IOException e) {
+      throw recordFailed(start, e);
+    }
+  }
+
+  /**
+   * Numbers a new review of any kind, records it and adds it to its activity. Numbering happens
+   * while the log is held, so each activity's reviews are logged in sequence order and replay
+   * numbers them identically. The review is only added once its record is written, and forced if
+   * its sync is due; a record that fails is rolled back out of the log, so the review adds nothing
+   * and uses up no sequence number.
+   *
+   * @param activity the reviewed activity
+   * @param newReview builds the review from its sequence number within the activity
+   * @return the added review
+   * @throws UncheckedIOException if the record cannot be written
+   */
+  public synchronized Review reviewAdded(StandardActivity activity, IntFunction<Review> newReview) {
+    // Every review of a logged system is added here, so the next number cannot be taken meanwhile
+    Review review = newReview.apply(activity.getNextReviewSequence());
+    long start = beginRecord();
+    try {
+      out.writeByte(REVIEW_ADDED);
+      out.writeString(activity.getId());
+      SnapshotStore.writeReview(out, review);
+      recordWritten();
+    } catch (IOException e) {
+      throw recordFailed(start, e);
+    }
+    activity.addReview(review);
+    return review;
+  }
+
+  /**
+   * Records a public review being endorsed.
+   *
+   * @param review the endorsed review
+   * @throws UncheckedIOException if the record cannot be written
+   */
+  public synchronized void reviewEndorsed(PublicReview review) {
+    long start = beginRecord();
+    try {
+      out.writeByte(REVIEW_ENDORSED);
+      out.writeString(review.getId());
+      recordWritten();
+    } catch (IOException e) {
+      throw recordFailed(start, e);
+    }
+  }
+
+  /**
+   * Records a private review being resolved.
+   *
+   * @param review the resolved review
+   * @param resolution the resolution it was given
+   * @throws UncheckedIOException if the record cannot be written
+   */
+  public synchronized void reviewResolved(PrivateReview review, String resolution) {
+    long start = beginRecord();
+    try {
+      out.writeByte(REVIEW_RESOLVED);
+      out.writeString(review.getId());
+      out.writeString(resolution);
+      recordWritten();
+    } catch (IOException e) {
+      throw recordFailed(start, e);
+    }
+  }
+
+  /**
+   * Records an image being uploaded to an expert review.
+   *
+   * @param review the review the image was uploaded to
+   * @param imageName the name of the image
+   * @throws UncheckedIOException if the record cannot be written
+   */
+  public synchronized void reviewImageUploaded(ExpertReview review, String imageName) {
+    long start = beginRecord();
+    try {
+      out.writeByte(REVIEW_IMAGE_UPLOADED);
+      out.writeString(review.getId());
+      out.writeString(imageName);
+      recordWritten();
+    } catch (IOException e) {
+      throw recordFailed(start, e);
+    }
+  }
+
+  /**
+   * Starts a batch on the current thread. Until {@link #endBatch()} is called, records appended by
+   * this thread do not trigger a sync, though a sync triggered by another thread still covers them.
+   */
+  public void beginBatch() {
+    batching.set(Boolean.TRUE);
+  }
+
+  /**
+   * Ends the current thread's batch and forces every record appended so far to disk.
+   *
+   * @throws IOException if the log cannot be written
+   */
+  public void endBatch() throws IOException {
+    batching.remove();
+    sync();
+  }
+
+  /**
+   * Writes every pending record and forces the log to disk.
+   *
+   * @throws IOException if the log cannot be written
+   */
+  public synchronized void sync() throws IOException {
+    if (failure != null) {
+      throw new IOException("Write-ahead log failed earlier: " + file, failure);
+    }
+    if (unsyncedRecords == 0 && out.pending() == 0) {
+      return;
+    }
+    out.flush();
+    channel.force(false);
+    unsyncedRecords = 0;
+  }
+
+  /**
+   * Saves a snapshot of the system that covers every record in the log, then starts the next
+   * generation with an empty log. Only called through {@link
+   * OperatorManagementSystem#checkpoint(Path)}, which keeps every mutation out meanwhile.
+   *
+   * @param system the system to save
+   * @param snapshotFile the snapshot file to write
+   * @throws IOException if the snapshot or the log cannot be written
+   */
+  synchronized void checkpoint(OperatorManagementSystem system, Path snapshotFile)
+      throws IOException {
+    sync();
+    SnapshotStore.save(system, snapshotFile, generation);
+    startGeneration(generation + 1);
+  }
+
+  /**
+   * Writes and forces any pending records and closes the log file.
+   *
+   * @throws IOException if the log cannot be written
+   */
+  public synchronized void close() throws IOException {
+    try {
+      // A log that failed earlier may hold part of a record, which must not reach the file
+      if (failure == null) {
+        sync();
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Notes where the next record starts, counting the bytes still buffered.
+   *
+   * @return the offset in the log file where the record will start
+   * @throws UncheckedIOException if the log failed earlier or its position cannot be read
+   */
+  private long beginRecord() {
+    if (failure != null) {
+      throw new UncheckedIOException(
+          new IOException(
+              "Write-ahead log failed earlier and takes no more records: " + file, failure));
+    }
+    try {
+      return channel.position() + out.pending();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Rolls a failed record back out of the log, whether its bytes are still buffered, partly in the
+   * file or written but not forced, so that the log again ends with the record before it. If even
+   * that fails, the log takes no more records, since anything appended after a stray fragment
+   * could not be replayed.
+   *
+   * @param start the offset where the record started
+   * @param cause the failure that interrupted the record
+   * @return the exception to throw to the caller
+   */
+  private UncheckedIOException recordFailed(long start, IOException cause) {
+    try {
+      long written = channel.position();
+      if (start >= written) {
+        out.discard((int) (start - written));
+      } else {
+        out.discard(0);
+        channel.truncate(start);
+        channel.position(start);
+      }
+    } catch (IOException | RuntimeException e) {
+      cause.addSuppressed(e);
+      failure = cause;
+    }
+    return new UncheckedIOException(cause);
+  }
+
+  private void recordWritten() throws IOException {
+    // The record only counts as unsynced once it is certain to stay in the log
+    if (unsyncedRecords + 1 >= syncEvery && batching.get() == null) {
+      sync();
+    } else {
+      unsyncedRecords++;
+    }
+  }
+
+  private void startGeneration(long newGeneration) throws IOException {
+    generation = newGeneration;
+    channel.truncate(0);
+    channel.position(0);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(generation);
+    out.flush();
+    channel.force(true);
+    unsyncedRecords = 0;
+  }
+
+  private static void applyRecord(BinaryDecoder in, OperatorManagementSystem system)
+      throws IOException {
+    int kind = in.readByte();
+    switch (kind) {
+      case OPERATOR_CREATED:
+        String operatorName = in.readString();
+        Location location = Location.values()[in.readByte()];
+        system.registerOperator(new Operator(operatorName, location, in.readString()));
+        break;
+      case ACTIVITY_CREATED:
+        Operator operator = require(system.findOperator(in.readString()), "operator");
+        String activityName = in.readString();
+        ActivityType type = ActivityType.values()[in.readByte()];
+        system.registerActivity(
+            new StandardActivity(activityName, type, in.readString(), operator));
+        break;
+      case REVIEW_ADDED:
+        StandardActivity activity = require(system.findActivity(in.readString()), "activity");
+        system.registerReview(activity, SnapshotStore.readReview(in));
+        break;
+      case REVIEW_ENDORSED:
+        requireReview(system, in.readString(), PublicReview.class).endorse();
+        break;
+      case REVIEW_RESOLVED:
+        requireReview(system, in.readString(), PrivateReview.class).resolve(in.readString());
+        break;
+      case REVIEW_IMAGE_UPLOADED:
+        requireReview(system, in.readString(), ExpertReview.class).addImage(in.readString());
+        break;
+      default:
+        throw new IOException("Unknown write-ahead log record kind " + kind);
+    }
+  }
+
+  private static <T> T require(T target, String description) throws IOException {
+    if (target == null) {
+      throw new IOException("Write-ahead log refers to a missing " + description);
+    }
+    return target;
+  }
+
+  private static <T extends Review> T requireReview(
+      OperatorManagementSystem system, String reviewId, Class<T> kind) throws IOException {
+    Review review = system.findReview(reviewId);
+    if (!kind.isInstance(review)) {
+      throw new IOException("Write-ahead log refers to a missing review " + reviewId);
+    }
+    return kind.cast(review);
+  }
+}
@@ -0,0 +1,48 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Output sink that writes to a character stream, such as a network connection. Text is collected
+ * by the stream's own buffering and only pushed out when the sink is flushed, which the command
+ * loop does before waiting for the next line of input. A failing stream is reported as a {@link
+ * ConnectionLostException}, so that it cannot be mistaken for any other kind of I/O failure.
+ */
+public class WriterSink implements OutputSink {
+
+  private final Writer writer;
+
+  /**
+   * Constructs a sink that writes to the given stream.
+   *
+   * @param writer the stream to write to, ideally buffered
+   */
+  public WriterSink(Writer writer) {
+    this.writer = writer;
+  }
+
+  @Override
+  public void print(String text) {
+    try {
+      writer.write(text);
+    } catch (IOException e) {
+      throw new ConnectionLostException(e);
+    }
+  }
+
+  @Override
+  public void println(String line) {
+    print(line);
+    print(System.lineSeparator());
+  }
+
+  @Override
+  public void flush() {
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      throw new ConnectionLostException(e);
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package nz.ac.auckland.se281;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import nz.ac.auckland.se281.Main.Command;
+import nz.ac.auckland.se281.Types.Location;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BulkImporterTest {
+
+  @Rule public final DiscardOutput discardOutput = new DiscardOutput();
+
+  private OperatorManagementSystem system;
+  private BulkImporter importer;
+  private List<String> errors;
+
+  @Before
+  public void setUp() {
+    system = new OperatorManagementSystem();
+    importer = new BulkImporter(system);
+    errors = new ArrayList<>();
+  }
+
+  @Test
+  public void B_01_quoted_fields_keep_commas_and_doubled_quotes() throws IOException {
+    load(
+        "CREATE_OPERATOR,\"Camels, Carts and Co\",AKL",
+        "CREATE_ACTIVITY,Camel Ride,Adventure,CCAC-AKL-001",
+        "ADD_PUBLIC_REVIEW,CCAC-AKL-001-001,Alice,n,5,\"Great, would ride \"\"again\"\"\"");
+
+    Assert.assertEquals(List.of(), errors);
+    Assert.assertEquals("Camels, Carts and Co", system.findOperator("CCAC-AKL-001").getName());
+    Assert.assertEquals(
+        "Great, would ride \"again\"", system.findReview("CCAC-AKL-001-001-R1").getContent());
+  }
+
+  @Test
+  public void B_02_quoted_line_breaks_stay_in_the_field() throws IOException {
+    load(
+        "CREATE_OPERATOR,West Auckland Camel Treks,AKL",
+        "CREATE_ACTIVITY,Camel Ride,Adventure,WACT-AKL-001",
+        "ADD_EXPERT_REVIEW,WACT-AKL-001-001,Eve,4,\"First line",
+        "second line\",y",
+        "ADD_EXPERT_REVIEW,NOPE-AKL-001-001,Eve,4,Fine,y");
+
+    Assert.assertEquals(
+        "First line\nsecond line", system.findReview("WACT-AKL-001-001-R1").getContent());
+
+    // The row spanning two lines is numbered by its first line and the next row by its own
+    Assert.assertEquals(
+        List.of("test.csv:5: Review not added: 'NOPE-AKL-001-001' is an invalid activity ID."),
+        errors);
+    Assert.assertEquals(4, importer.getRows());
+  }
+
+  @Test
+  public void B_03_byte_order_mark_is_ignored() throws IOException {
+    load("\uFEFFCREATE_OPERATOR,West Auckland Camel Treks,AKL");
+
+    Assert.assertEquals(List.of(), errors);
+    Assert.assertNotNull(system.findOperator("WACT-AKL-001"));
+    Assert.assertEquals(1, importer.getInserted(Command.CREATE_OPERATOR));
+  }
+
+  @Test
+  public void B_04_rejected_rows_are_reported_with_their_line() throws IOException {
+    load(
+        "CREATE_OPERATOR,West Auckland Camel Treks,AKL",
+        "",
+        "DELETE_OPERATOR,WACT-AKL-001",
+        "CREATE_ACTIVITY,Camel Ride,Adventure",
+        "CREATE_ACTIVITY,Camel Ride,Adventure,WACT-AKL-001",
+        "ADD_PUBLIC_REVIEW,WACT-AKL-001-001,Alice,n,five,Great",
+        "ADD_EXPERT_REVIEW,WACT-AKL-001-001,Eve,x,Fine,y",
+        "CREATE_ACTIVITY,Camel Ride,Adventure,WACT-WLG-001",
+        "ADD_PRIVATE_REVIEW,WACT-AKL-001-001,Bob,bob@example.com,2,Too hot,y");
+
+    Assert.assertEquals(
+        List.of(
+            "test.csv:3: 'DELETE_OPERATOR' cannot be imported.",
+            "test.csv:4: CREATE_ACTIVITY rows need 4 fields but this one has 3.",
+            "test.csv:6: Review not added: 'five' is not a valid rating.",
+            "test.csv:7: Review not added: 'x' is not a valid rating.",
+            "test.csv:8: Activity not created: 'WACT-WLG-001' is an invalid operator ID."),
+        errors);
+
+    // The load carries on past every rejected row, and the blank row is not counted
+    Assert.assertEquals(8, importer.getRows());
+    Assert.assertEquals(5, importer.getRejectedRows());
+    Assert.assertEquals(1, importer.getInserted(Command.ADD_PRIVATE_REVIEW));
+    Assert.assertEquals(0, importer.getInserted(Command.ADD_PUBLIC_REVIEW));
+    Assert.assertEquals(
+        "WACT-AKL-001-001-R1", system.findActivity("WACT-AKL-001-001").getReview(0).getId());
+  }
+
+  @Test
+  public void B_05_review_rows_with_the_wrong_number_of_options_are_reported() throws IOException {
+    load(
+        "CREATE_OPERATOR,West Auckland Camel Treks,AKL",
+        "CREATE_ACTIVITY,Camel Ride,Adventure,WACT-AKL-001",
+        "ADD_PUBLIC_REVIEW,WACT-AKL-001-001,Alice,5",
+        "ADD_EXPERT_REVIEW,WACT-AKL-001-001,Eve,4,Well run,y,extra");
+
+    Assert.assertEquals(
+        List.of(
+            "test.csv:3: ADD_PUBLIC_REVIEW rows need 6 fields but this one has 4.",
+            "test.csv:4: ADD_EXPERT_REVIEW rows need 6 fields but this one has 7."),
+        errors);
+    Assert.assertEquals(0, system.findActivity("WACT-AKL-001-001").getReviewCount());
+
+    // The commands themselves still turn a wrong option count away without a message
+    StringWriter out = new StringWriter();
+    Output.setThreadSink(new WriterSink(out));
+    system.addPublicReview("WACT-AKL-001-001", new String[] {"Alice", "5"});
+    system.addExpertReview("WACT-AKL-001-001", new String[] {"Eve"});
+    Assert.assertEquals("", out.toString());
+  }
+
+  @Test
+  public void B_06_parallel_load_matches_sequential_load() throws IOException {
+    String csv = mixedLocationsCsv();
+    OperatorManagementSystem parallel = new OperatorManagementSystem();
+    List<String> parallelErrors = Collections.synchronizedList(new ArrayList<>());
+    new BulkImporter(parallel)
+        .loadParallel(new BufferedReader(new StringReader(csv)), "test.csv", parallelErrors::add);
+    new BulkImporter(system)
+        .load(new BufferedReader(new StringReader(csv)), "test.csv", errors::add);
+
+    // Rejections from different locations may arrive in any order, but they are the same ones
+    Assert.assertEquals(13, errors.size());
+    Assert.assertEquals(new HashSet<>(errors), new HashSet<>(parallelErrors));
+    Assert.assertEquals(errors.size(), parallelErrors.size());
+
+    // Operators of different locations may be listed in another order, but nothing else differs
+    Map<String, String> expected = viewEveryOperator(system);
+    Assert.assertEquals(24, expected.size());
+    String akl = expected.get("AT-AKL-001");
+    Assert.assertTrue(akl, akl.contains("There are 3 reviews for activity 'Night Market'."));
+    Assert.assertEquals(expected, viewEveryOperator(parallel));
+  }
+
+  /**
+   * Builds CSV text that interleaves the rows of every location, including some rows of each
+   * location that are rejected.
+   *
+   * @return the CSV text
+   */
+  private static String mixedLocationsCsv() {
+    String[] names = {"Alpha Tours", "Bravo Tours", "Charlie Tours"};
+    StringBuilder csv = new StringBuilder();
+    for (int round = 0; round < names.length; round++) {
+      for (Location location : Location.values()) {
+        String operatorId =
+            names[round].replaceAll("[a-z ]", "")
+                + "-"
+                + location.getLocationAbbreviation()
+                + "-00"
+                + (round + 1);
+        csv.append("CREATE_OPERATOR,").append(names[round]).append(',');
+        csv.append(location.getLocationAbbreviation()).append('\n');
+        csv.append("CREATE_ACTIVITY,Harbour Cruise,Scenic,").append(operatorId).append('\n');
+        csv.append("CREATE_ACTIVITY,Night Market,Food,").append(operatorId).append('\n');
+        for (String activityId : new String[] {operatorId + "-001", operatorId + "-002"}) {
+          csv.append("ADD_PUBLIC_REVIEW,").append(activityId).append(",Alice,n,4,Lovely\n");
+          csv.append("ADD_PRIVATE_REVIEW,").append(activityId);
+          csv.append(",Bob,bob@example.com,2,\"Too hot, too long\",y\n");
+          csv.append("ADD_EXPERT_REVIEW,").append(activityId).append(",Eve,5,Superb,y\n");
+        }
+      }
+
+      // Rejected rows: a duplicate operator, a bad rating and two rows naming no valid location
+      Location location = Location.values()[round];
+      csv.append("CREATE_OPERATOR,").append(names[round]).append(',');
+      csv.append(location.getLocationAbbreviation()).append('\n');
+      csv.append("ADD_EXPERT_REVIEW,AT-").append(location.getLocationAbbreviation());
+      csv.append("-001-001,Eve,great,Superb,y\n");
+      csv.append("CREATE_OPERATOR,Nowhere Tours,XYZ\n");
+      csv.append("CREATE_ACTIVITY,Ghost Walk,Culture,AT-XYZ-001\n");
+    }
+    csv.append("DELETE_OPERATOR,AT-AKL-001\n");
+    return csv.toString();
+  }
+
+  /**
+   * Captures what VIEW_ACTIVITIES shows for every operator of a system and what DISPLAY_REVIEWS
+   * shows for each of its activities.
+   *
+   * @param system the system to view
+   * @return the output for each operator, keyed by operator ID
+   */
+  private static Map<String, String> viewEveryOperator(OperatorManagementSystem system) {
+    Map<String, String> views = new TreeMap<>();
+    for (Operator operator : system.getOperators()) {
+      StringWriter out = new StringWriter();
+      Output.setThreadSink(new WriterSink(out));
+      system.viewActivities(operator.getId());
+      for (Activity activity : operator.getActivities()) {
+        system.displayReviews(activity.getId());
+      }
+      DiscardOutput.discardOnCurrentThread();
+      views.put(operator.getId(), out.toString());
+    }
+    return views;
+  }
+
+  /**
+   * Loads CSV lines into the test system, collecting the rejections.
+   *
+   * @param lines the lines of the CSV text
+   * @throws IOException if the rows cannot be inserted
+   */
+  private void load(String... lines) throws IOException {
+    String csv = String.join("\n", lines) + "\n";
+    importer.load(new BufferedReader(new StringReader(csv)), "test.csv", errors::add);
+  }
+}
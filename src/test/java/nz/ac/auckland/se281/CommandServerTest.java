@@ -0,0 +1,305 @@
+package nz.ac.auckland.se281;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CommandServerTest {
+
+  private static final String PROMPT = "281-activity-operator-system> ";
+
+  private OperatorManagementSystem system;
+  private CommandServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    system = new OperatorManagementSystem();
+    server = new CommandServer(system);
+    server.start(InetAddress.getLoopbackAddress(), 0);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  public void C_01_session_answers_commands_and_option_prompts() throws IOException {
+    try (Client client = new Client(server.getPort())) {
+      client.readUntil(PROMPT);
+
+      client.send("CREATE_OPERATOR 'West Auckland Camel Treks' 'AKL'");
+      Assert.assertEquals(
+          "Successfully created operator 'West Auckland Camel Treks' ('WACT-AKL-001') located in"
+              + " 'Auckland | Tāmaki Makaurau'."
+              + System.lineSeparator()
+              + PROMPT,
+          client.readUntil(PROMPT));
+
+      client.send("CREATE_ACTIVITY 'Bethells Beach Camel Trek' Adventure 'WACT-AKL-001'");
+      client.readUntil(PROMPT);
+
+      // Each option is prompted for in turn and only answered once its prompt has arrived
+      client.send("ADD_PUBLIC_REVIEW WACT-AKL-001-001");
+      Assert.assertEquals("\tReviewer name: ", client.readUntil("\tReviewer name: "));
+      client.send("Alice");
+      Assert.assertEquals("\tAnonymous? (y/n): ", client.readUntil("\tAnonymous? (y/n): "));
+      client.send("n");
+      client.readUntil("\tRating (1-5): ");
+      client.send("4");
+      client.readUntil("\tReview text: ");
+      client.send("Smooth ride");
+      Assert.assertTrue(
+          client
+              .readUntil(PROMPT)
+              .startsWith(
+                  "Public review 'WACT-AKL-001-001-R1' added successfully for activity"
+                      + " 'Bethells Beach Camel Trek'."));
+
+      client.send("EXIT");
+      Assert.assertTrue(client.readToEnd().contains("You closed the terminal. Goodbye."));
+    }
+
+    Assert.assertEquals(1, system.findActivity("WACT-AKL-001-001").getReviewCount());
+  }
+
+  @Test
+  public void C_02_concurrent_sessions_share_one_system() throws IOException {
+    try (Client first = new Client(server.getPort());
+        Client second = new Client(server.getPort())) {
+      first.readUntil(PROMPT);
+      second.readUntil(PROMPT);
+
+      // The second session leaves a review half entered while the first one carries on
+      first.send("CREATE_OPERATOR 'West Auckland Camel Treks' 'AKL'");
+      first.readUntil(PROMPT);
+      first.send("CREATE_ACTIVITY 'Bethells Beach Camel Trek' Adventure 'WACT-AKL-001'");
+      first.readUntil(PROMPT);
+      second.send("ADD_EXPERT_REVIEW WACT-AKL-001-001");
+      second.readUntil("\tReviewer name: ");
+      second.send("Eve");
+      second.readUntil("\tRating (1-5): ");
+
+      first.send("ADD_PUBLIC_REVIEW WACT-AKL-001-001");
+      first.send("Alice");
+      first.send("n");
+      first.send("5");
+      first.send("Great");
+      Assert.assertTrue(first.readUntil(PROMPT).contains("'WACT-AKL-001-001-R1' added"));
+
+      second.send("3");
+      second.send("Fine");
+      second.send("y");
+      Assert.assertTrue(second.readUntil(PROMPT).contains("'WACT-AKL-001-001-R2' added"));
+
+      // Each session sees what the other one did
+      first.send("DISPLAY_REVIEWS WACT-AKL-001-001");
+      String reviews = first.readUntil(PROMPT);
+      Assert.assertTrue(reviews, reviews.contains("There are 2 reviews for activity"));
+      Assert.assertTrue(reviews, reviews.contains("Eve"));
+
+      first.send("EXIT");
+      second.send("EXIT");
+      first.readToEnd();
+      second.readToEnd();
+    }
+
+    Assert.assertTrue(
+        server.getMetrics().report().startsWith("CREATE_OPERATOR          count=1 p50="));
+  }
+
+  @Test
+  public void C_03_failure_other_than_the_connection_is_reported() throws IOException {
+    Path dir = Files.createTempDirectory("server-test");
+    PrintStream originalErr = System.err;
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    try {
+      // A log that has already been closed cannot record anything
+      WriteAheadLog log = WriteAheadLog.open(dir.resolve("oms.wal"), 1);
+      log.recover(system, 0);
+      log.close();
+      system.setWriteAheadLog(log);
+      System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+
+      try (Client client = new Client(server.getPort())) {
+        client.readUntil(PROMPT);
+        client.send("CREATE_OPERATOR 'West Auckland Camel Treks' 'AKL'");
+        String reply = client.readUntil(PROMPT);
+        Assert.assertTrue(
+            reply, reply.startsWith("Error! Command failed: java.io.UncheckedIOException"));
+        client.send("EXIT");
+        client.readToEnd();
+      }
+      server.close();
+    } finally {
+      System.setErr(originalErr);
+      SnapshotStoreTest.deleteRecursively(dir);
+    }
+
+    String reported = err.toString(StandardCharsets.UTF_8);
+    Assert.assertTrue(reported, reported.contains("failed: java.io.UncheckedIOException"));
+    Assert.assertNull(system.findOperator("WACT-AKL-001"));
+  }
+
+  @Test
+  public void C_04_replies_are_sent_while_the_next_line_is_incomplete() throws IOException {
+    try (Client client = new Client(server.getPort())) {
+      client.readUntil(PROMPT);
+
+      // A whole command and the start of the next one arrive together
+      client.sendRaw(
+          "CREATE_OPERATOR 'West Auckland Camel Treks' 'AKL'"
+              + System.lineSeparator()
+              + "SEARCH_OPER");
+      Assert.assertTrue(client.readUntil(PROMPT).startsWith("Successfully created operator"));
+
+      // The rest of the line completes the command
+      client.send("ATORS *");
+      String found = client.readUntil(PROMPT);
+      Assert.assertTrue(found, found.startsWith("There is 1 matching operator found:"));
+      client.send("EXIT");
+      client.readToEnd();
+    }
+  }
+
+  @Test
+  public void C_05_failing_command_is_answered_and_the_session_continues() throws IOException {
+    try (Client client = new Client(server.getPort())) {
+      client.readUntil(PROMPT);
+      client.send("CREATE_OPERATOR 'West Auckland Camel Treks' 'AKL'");
+      client.readUntil(PROMPT);
+      client.send("CREATE_ACTIVITY 'Bethells Beach Camel Trek' Adventure 'WACT-AKL-001'");
+      client.readUntil(PROMPT);
+
+      // A rating that is not a number fails the command, not the session
+      client.send("ADD_PUBLIC_REVIEW WACT-AKL-001-001");
+      client.send("Alice");
+      client.send("n");
+      client.send("five");
+      client.send("Great");
+      String reply = client.readUntil(PROMPT);
+      Assert.assertTrue(
+          reply, reply.contains("Error! Command failed: java.lang.NumberFormatException"));
+
+      client.send("ADD_PUBLIC_REVIEW WACT-AKL-001-001");
+      client.send("Alice");
+      client.send("n");
+      client.send("5");
+      client.send("Great");
+      Assert.assertTrue(client.readUntil(PROMPT).contains("'WACT-AKL-001-001-R1' added"));
+      client.send("EXIT");
+      client.readToEnd();
+    }
+    Assert.assertTrue(server.getMetrics().report().contains("FAILED=1"));
+  }
+
+  @Test
+  public void C_06_close_disconnects_sessions_that_just_connected() throws IOException {
+    Client[] clients = new Client[8];
+    try {
+      for (int i = 0; i < clients.length; i++) {
+        clients[i] = new Client(server.getPort());
+      }
+
+      // Some of these connections may still be on their way through the acceptor, and close must
+      // neither hang on them nor leave them open
+      server.close();
+      for (Client client : clients) {
+        try {
+          client.readToEnd();
+        } catch (SocketException reset) {
+          // Closed before the session started, which disconnects it just as well
+        }
+      }
+    } finally {
+      for (Client client : clients) {
+        if (client != null) {
+          client.close();
+        }
+      }
+    }
+  }
+
+  /** Client end of a session, reading replies with a timeout so that a lost reply fails fast. */
+  private static class Client implements AutoCloseable {
+
+    private final Socket socket;
+    private final Reader in;
+    private final Writer out;
+
+    Client(int port) throws IOException {
+      socket = new Socket(InetAddress.getLoopbackAddress(), port);
+      socket.setSoTimeout(5000);
+      in = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
+      out =
+          new BufferedWriter(
+              new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    void send(String line) throws IOException {
+      sendRaw(line + System.lineSeparator());
+    }
+
+    void sendRaw(String text) throws IOException {
+      out.write(text);
+      out.flush();
+    }
+
+    /**
+     * Reads everything up to and including the next occurrence of a marker.
+     *
+     * @param marker the text to stop after
+     * @return the text read
+     * @throws IOException if the session ends first or nothing arrives in time
+     */
+    String readUntil(String marker) throws IOException {
+      StringBuilder sb = new StringBuilder();
+      while (sb.length() < marker.length()
+          || sb.lastIndexOf(marker, sb.length() - marker.length()) < 0) {
+        int c = in.read();
+        if (c < 0) {
+          throw new IOException("Session ended before '" + marker + "' in: " + sb);
+        }
+        sb.append((char) c);
+      }
+      return sb.toString();
+    }
+
+    /**
+     * Reads everything until the server closes the session.
+     *
+     * @return the text read
+     * @throws IOException if nothing arrives in time
+     */
+    String readToEnd() throws IOException {
+      StringBuilder sb = new StringBuilder();
+      for (int c = in.read(); c >= 0; c = in.read()) {
+        sb.append((char) c);
+      }
+      return sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+      socket.close();
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import nz.ac.auckland.se281.Types.Location;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConcurrencyTest {
+
+  private static final int THREADS = 8;
+
+  private static final Location[] LOCATIONS = {
+    Location.AKL, Location.WLG, Location.CHC, Location.DUD
+  };
+
+  private Path dir;
+  private Path logFile;
+  private OperatorManagementSystem system;
+  private ExecutorService workers;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("concurrency-test");
+    logFile = dir.resolve("oms.wal");
+    system = new OperatorManagementSystem();
+    WriteAheadLog log = WriteAheadLog.open(logFile, 64);
+    log.recover(system, 0);
+    system.setWriteAheadLog(log);
+    workers = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    workers.shutdownNow();
+    system.getWriteAheadLog().close();
+    SnapshotStoreTest.deleteRecursively(dir);
+  }
+
+  @Test
+  public void T_01_ids_stay_gap_free_under_contention_and_replay_identically() throws Exception {
+    // Every thread creates operators in every location, all at once
+    runOnEveryThread(
+        thread -> {
+          for (int i = 0; i < 25; i++) {
+            Location location = LOCATIONS[(thread + i) % LOCATIONS.length];
+            system.createOperator(
+                "Op " + thread + " Tour " + i, location.getLocationAbbreviation());
+          }
+        });
+    List<Operator> operators = system.getOperators();
+    Assert.assertEquals(THREADS * 25, operators.size());
+    for (Location location : LOCATIONS) {
+      TreeSet<Integer> numbers = new TreeSet<>();
+      for (Operator operator : operators) {
+        if (operator.getLocation() == location) {
+          numbers.add(Integer.parseInt(operator.getId().substring(operator.getId().length() - 3)));
+        }
+      }
+      Assert.assertEquals(location.toString(), numbers.size(), (int) numbers.last());
+    }
+
+    // Every thread creates activities for the same few operators
+    List<Operator> busy = operators.subList(0, 4);
+    runOnEveryThread(
+        thread -> {
+          for (int i = 0; i < 40; i++) {
+            system.createActivity(
+                "Trip " + thread + " " + i, "Scenic", busy.get(i % busy.size()).getId());
+          }
+        });
+    int activities = 0;
+    for (Operator operator : busy) {
+      List<Activity> offered = operator.getActivities();
+      for (int i = 0; i < offered.size(); i++) {
+        Assert.assertEquals(
+            IdGenerator.activityId(operator.getId(), i + 1), offered.get(i).getId());
+      }
+      activities += offered.size();
+    }
+    Assert.assertEquals(THREADS * 40, activities);
+
+    // Every thread reviews, endorses, resolves and uploads to the same two activities
+    String[] reviewed = {
+      busy.get(0).getActivities().get(0).getId(), busy.get(1).getActivities().get(0).getId()
+    };
+    runOnEveryThread(
+        thread -> {
+          for (int i = 0; i < 30; i++) {
+            String activityId = reviewed[i % reviewed.length];
+            String author = "Reviewer " + thread;
+            system.addPublicReview(activityId, new String[] {author, "n", "4", "Nice " + i});
+            system.addPrivateReview(
+                activityId, new String[] {author, "a@b.nz", "2", "Hot " + i, "y"});
+            system.addExpertReview(activityId, new String[] {author, "5", "Good " + i, "y"});
+            system.endorseReview(activityId + "-R" + (i + 1));
+            system.resolveReview(activityId + "-R" + (i + 2), "Sorted " + thread);
+            system.uploadReviewImage(activityId + "-R" + (i + 3), "img" + thread + ".png");
+          }
+        });
+    for (String activityId : reviewed) {
+      List<Review> reviews = system.findActivity(activityId).getReviews();
+      Assert.assertEquals(THREADS * 15 * 3, reviews.size());
+      for (int i = 0; i < reviews.size(); i++) {
+        Assert.assertEquals(IdGenerator.reviewId(activityId, i + 1), reviews.get(i).getId());
+      }
+    }
+
+    // Operators of different locations may be logged in another order, but nothing else differs
+    system.getWriteAheadLog().close();
+    OperatorManagementSystem replayed = new OperatorManagementSystem();
+    Assert.assertTrue(WriteAheadLog.replay(logFile, replayed, 0) > 0);
+    Assert.assertEquals(
+        operatorBlocks(SnapshotStoreTest.dump(system)),
+        operatorBlocks(SnapshotStoreTest.dump(replayed)));
+  }
+
+  /**
+   * Runs a task on every worker thread at once and waits for all of them, failing with the first
+   * error any of them hit.
+   *
+   * @param task the task, given the number of the thread it runs on
+   * @throws Exception if any thread failed
+   */
+  private void runOnEveryThread(ThreadTask task) throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> running = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      int thread = t;
+      running.add(
+          workers.submit(
+              () -> {
+                DiscardOutput.discardOnCurrentThread();
+                try {
+                  start.await();
+                  task.run(thread);
+                } finally {
+                  Output.setThreadSink(null);
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : running) {
+      future.get();
+    }
+  }
+
+  /**
+   * Splits a dump into one block per operator, sorted, so that dumps can be compared regardless of
+   * the order operators of different locations were listed in.
+   *
+   * @param dump a dump made by {@link SnapshotStoreTest#dump(OperatorManagementSystem)}
+   * @return the sorted blocks
+   */
+  private static List<String> operatorBlocks(String dump) {
+    List<String> blocks = new ArrayList<>();
+    StringBuilder block = new StringBuilder();
+    for (String line : dump.split("\n")) {
+      if (!line.startsWith(" ") && block.length() > 0) {
+        blocks.add(block.toString());
+        block.setLength(0);
+      }
+      block.append(line).append('\n');
+    }
+    blocks.add(block.toString());
+    Collections.sort(blocks);
+    return blocks;
+  }
+
+  /** Work done by one of several threads. */
+  private interface ThreadTask {
+    void run(int thread) throws Exception;
+  }
+}
@@ -0,0 +1,29 @@
+package nz.ac.auckland.se281;
+
+import java.io.StringWriter;
+import org.junit.rules.ExternalResource;
+
+/**
+ * Test rule that keeps what a test prints off the console. For the length of each test, the test's
+ * thread writes to an output sink of its own that is thrown away.
+ */
+public class DiscardOutput extends ExternalResource {
+
+  @Override
+  protected void before() {
+    discardOnCurrentThread();
+  }
+
+  @Override
+  protected void after() {
+    Output.setThreadSink(null);
+  }
+
+  /**
+   * Throws away what the current thread prints until its sink is cleared. Used for threads that a
+   * test starts itself, which the rule does not reach.
+   */
+  public static void discardOnCurrentThread() {
+    Output.setThreadSink(new WriterSink(new StringWriter()));
+  }
+}
@@ -0,0 +1,123 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class JsonLinesExporterTest {
+
+  @Rule public final DiscardOutput discardOutput = new DiscardOutput();
+
+  private Path dir;
+  private Path exportFile;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("export-test");
+    exportFile = dir.resolve("oms.jsonl");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    SnapshotStoreTest.deleteRecursively(dir);
+  }
+
+  @Test
+  public void J_01_every_entity_is_one_line_with_every_field() throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    system.createOperator("West Auckland Camel Treks", "AKL");
+    system.createActivity("Camel Ride", "Adventure", "WACT-AKL-001");
+    system.addPublicReview("WACT-AKL-001-001", new String[] {"Alice", "n", "5", "Great"});
+    system.endorseReview("WACT-AKL-001-001-R1");
+    system.addPrivateReview(
+        "WACT-AKL-001-001", new String[] {"Bob", "bob@example.com", "2", "Too hot", "y"});
+    system.addPrivateReview(
+        "WACT-AKL-001-001", new String[] {"Carol", "carol@example.com", "3", "Slow", "n"});
+    system.resolveReview("WACT-AKL-001-001-R3", "We added shade");
+    system.addExpertReview("WACT-AKL-001-001", new String[] {"Eve", "4", "Well run", "y"});
+    system.uploadReviewImage("WACT-AKL-001-001-R4", "camel.png");
+    system.uploadReviewImage("WACT-AKL-001-001-R4", "beach.jpg");
+    system.createOperator("Tongariro Trails", "TUO");
+
+    Assert.assertEquals(7, JsonLinesExporter.export(system, exportFile));
+    Assert.assertEquals(
+        List.of(
+            "{\"type\":\"operator\",\"id\":\"WACT-AKL-001\",\"name\":\"West Auckland Camel Treks\","
+                + "\"location\":\"AKL\",\"locationName\":\"Auckland | Tāmaki Makaurau\"}",
+            "{\"type\":\"activity\",\"id\":\"WACT-AKL-001-001\",\"operatorId\":\"WACT-AKL-001\","
+                + "\"name\":\"Camel Ride\",\"activityType\":\"Adventure\"}",
+            "{\"type\":\"review\",\"id\":\"WACT-AKL-001-001-R1\","
+                + "\"activityId\":\"WACT-AKL-001-001\","
+                + "\"reviewType\":\"Public\",\"rating\":5,\"author\":\"Alice\",\"text\":\"Great\","
+                + "\"endorsed\":true}",
+            "{\"type\":\"review\",\"id\":\"WACT-AKL-001-001-R2\","
+                + "\"activityId\":\"WACT-AKL-001-001\","
+                + "\"reviewType\":\"Private\",\"rating\":2,\"author\":\"Bob\",\"text\":\"Too hot\","
+                + "\"contact\":\"bob@example.com\",\"followUpRequested\":true,\"resolved\":false,"
+                + "\"resolution\":null}",
+            "{\"type\":\"review\",\"id\":\"WACT-AKL-001-001-R3\","
+                + "\"activityId\":\"WACT-AKL-001-001\","
+                + "\"reviewType\":\"Private\",\"rating\":3,\"author\":\"Carol\",\"text\":\"Slow\","
+                + "\"contact\":\"carol@example.com\",\"followUpRequested\":false,\"resolved\":true,"
+                + "\"resolution\":\"We added shade\"}",
+            "{\"type\":\"review\",\"id\":\"WACT-AKL-001-001-R4\","
+                + "\"activityId\":\"WACT-AKL-001-001\","
+                + "\"reviewType\":\"Expert\",\"rating\":4,\"author\":\"Eve\",\"text\":\"Well run\","
+                + "\"recommended\":true,\"images\":[\"camel.png\",\"beach.jpg\"]}",
+            "{\"type\":\"operator\",\"id\":\"TT-TUO-001\",\"name\":\"Tongariro Trails\","
+                + "\"location\":\"TUO\",\"locationName\":\"Taupo | Taupō-nui-a-Tia\"}"),
+        Files.readAllLines(exportFile, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void J_02_strings_are_escaped() throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    system.createOperator("West Auckland Camel Treks", "AKL");
+    system.createActivity("Camel Ride", "Adventure", "WACT-AKL-001");
+    system.addExpertReview(
+        "WACT-AKL-001-001",
+        new String[] {"Eve", "4", "Said \"wow\"\tthen C:\\camels\r\nnext\u0001\u001fend", "n"});
+    system.uploadReviewImage("WACT-AKL-001-001-R1", "say \"cheese\".png");
+
+    Assert.assertEquals(3, JsonLinesExporter.export(system, exportFile));
+
+    // Line breaks inside a string are escaped, so each record still takes exactly one line
+    List<String> lines = Files.readAllLines(exportFile, StandardCharsets.UTF_8);
+    Assert.assertEquals(3, lines.size());
+    Assert.assertEquals(
+        "{\"type\":\"review\",\"id\":\"WACT-AKL-001-001-R1\",\"activityId\":\"WACT-AKL-001-001\","
+            + "\"reviewType\":\"Expert\",\"rating\":4,\"author\":\"Eve\","
+            + "\"text\":\"Said \\\"wow\\\"\\tthen C:\\\\camels\\r\\nnext\\u0001\\u001fend\","
+            + "\"recommended\":false,\"images\":[\"say \\\"cheese\\\".png\"]}",
+        lines.get(2));
+  }
+
+  @Test
+  public void J_03_failed_export_leaves_no_temporary_file() throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    system.createOperator("West Auckland Camel Treks", "AKL");
+
+    // A directory that is not empty cannot be replaced, so the export is written but not moved
+    Files.createDirectory(exportFile);
+    Files.createFile(exportFile.resolve("keep"));
+    try {
+      JsonLinesExporter.export(system, exportFile);
+      Assert.fail("Expected the export to fail");
+    } catch (IOException expected) {
+      // The target is still the directory
+    }
+
+    Assert.assertFalse(Files.exists(dir.resolve("oms.jsonl.tmp")));
+    Assert.assertTrue(Files.isDirectory(exportFile));
+  }
+}
@@ -2,9 +2,14 @@ package nz.ac.auckland.se281;
 
 import static nz.ac.auckland.se281.Main.Command.*;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -22,7 +27,8 @@ import org.junit.runners.Suite.SuiteClasses;
   // to recognise the organised tests.
   MainTest.YourTests.YourTask1Tests.class,
   MainTest.YourTests.YourTask2Tests.class,
-  MainTest.YourTests.YourTask3Tests.class
+  MainTest.YourTests.YourTask3Tests.class,
+  MainTest.YourTests.YourBatchTests.class
 })
 public class MainTest {
 
@@ -1514,6 +1520,16 @@ public class MainTest {
         assertDoesNotContain("There are 14", true);
         assertDoesNotContain("There are no matching operators found.", true);
       }
+
+      @Test
+      public void T1_xx_create_operator_name_with_special_characters() throws Exception {
+        runCommands(CREATE_OPERATOR, "'Cash $1 \\ Money'", "'AKL'", EXIT);
+
+        assertContains(
+            "Successfully created operator 'Cash $1 \\ Money' ('C$\\M-AKL-001') located in"
+                + " 'Auckland | Tāmaki Makaurau'.");
+        assertDoesNotContain("Operator not created", true);
+      }
     }
 
     @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -2158,6 +2174,152 @@ public class MainTest {
         assertContains("No reviewed activities found in Auckland | Tāmaki Makaurau.");
         assertDoesNotContain("Top reviewed activity in Auckland | Tāmaki Makaurau:");
       }
+
+      // test that private ratings do not count towards the average of a ranked activity
+      @Test
+      public void T3_XX_display_top_activities_private_rating_excluded() throws Exception {
+        runCommands(
+            unpack(
+                CREATE_14_OPERATORS,
+                CREATE_27_ACTIVITIES,
+                ADD_PUBLIC_REVIEW,
+                "WACT-AKL-001-001",
+                options("Alice", "n", "3", "Could be better"),
+                ADD_PRIVATE_REVIEW,
+                "WACT-AKL-001-001",
+                options("Felicia", "felicia@email.com", "5", "Great", "n"),
+                DISPLAY_TOP_ACTIVITIES,
+                EXIT));
+        assertContains(
+            "Top reviewed activity in Auckland | Tāmaki Makaurau is 'Bethells Beach Camel Trek',"
+                + " with an average rating of 3.00");
+      }
+
+      // test that the metrics count completed and rejected commands
+      @Test
+      public void T3_XX_display_metrics_counts_commands() throws Exception {
+        runCommands(
+            CREATE_OPERATOR,
+            "'West Auckland Camel Treks'",
+            "'AKL'",
+            SEARCH_OPERATORS,
+            "*",
+            SEARCH_OPERATORS,
+            "Camel",
+            VIEW_ACTIVITIES,
+            DISPLAY_METRICS,
+            EXIT);
+        assertContains("CREATE_OPERATOR          count=1 p50=");
+        assertContains("SEARCH_OPERATORS         count=2 p50=");
+        assertDoesNotContain("VIEW_ACTIVITIES          count=");
+        assertContains("Errors: COMMAND_NOT_FOUND=0 WRONG_ARGUMENT_COUNT=1 FAILED=0");
+      }
+    }
+
+    @FixMethodOrder(MethodSorters.NAME_ASCENDING)
+    public static class YourBatchTests extends CliTest {
+
+      public YourBatchTests() {
+        super(Main.class);
+      }
+
+      // test that a review's answers are taken from the lines after it, without any prompts
+      @Test
+      public void B_01_batch_review_options_read_from_input() throws Exception {
+        runBatch(
+            "CREATE_OPERATOR 'West Auckland Camel Treks' 'AKL'",
+            "CREATE_ACTIVITY 'Bethells Beach Camel Trek' Adventure 'WACT-AKL-001'",
+            "ADD_PUBLIC_REVIEW WACT-AKL-001-001",
+            "Alice",
+            "n",
+            "4",
+            "Lovely views",
+            "DISPLAY_REVIEWS WACT-AKL-001-001",
+            "EXIT");
+        assertContains(
+            "Public review 'WACT-AKL-001-001-R1' added successfully for activity 'Bethells Beach"
+                + " Camel Trek'.");
+        assertContains("Lovely views");
+        assertDoesNotContain(ADD_PUBLIC_REVIEW.getOptionPrompt(0));
+        assertDoesNotContain("281-activity-operator-system>");
+      }
+
+      // test that nothing after the exit command is run
+      @Test
+      public void B_02_batch_exit_skips_remaining_lines() throws Exception {
+        String report =
+            runBatch(
+                "CREATE_OPERATOR 'West Auckland Camel Treks' 'AKL'",
+                "EXIT",
+                "CREATE_OPERATOR 'Volcano Bungee Jump' 'AKL'");
+        assertContains("Successfully created operator 'West Auckland Camel Treks'");
+        assertContains("You closed the terminal. Goodbye.");
+        assertDoesNotContain("Volcano Bungee Jump");
+        Assert.assertTrue(
+            report, report.contains("Batch complete: 2 commands (0 failed) from 2 lines"));
+      }
+
+      // test that a batch without an exit command runs to the end of the input
+      @Test
+      public void B_03_batch_ends_at_end_of_input() throws Exception {
+        String report =
+            runBatch(
+                "CREATE_OPERATOR 'West Auckland Camel Treks' 'AKL'",
+                "",
+                "CREATE_OPERATOR 'Volcano Bungee Jump' 'AKL'");
+        assertContains("Successfully created operator 'West Auckland Camel Treks'");
+        assertContains("Successfully created operator 'Volcano Bungee Jump'");
+        assertDoesNotContain("You closed the terminal. Goodbye.");
+        Assert.assertTrue(
+            report, report.contains("Batch complete: 2 commands (0 failed) from 3 lines"));
+      }
+
+      // test that a failing command is reported with its line and the batch carries on after it
+      @Test
+      public void B_04_batch_failing_line_reported_and_skipped() throws Exception {
+        String report =
+            runBatch(
+                "CREATE_OPERATOR 'West Auckland Camel Treks' 'AKL'",
+                "CREATE_ACTIVITY 'Bethells Beach Camel Trek' Adventure 'WACT-AKL-001'",
+                "ADD_PUBLIC_REVIEW WACT-AKL-001-001",
+                "Alice",
+                "n",
+                "five",
+                "Great",
+                "ADD_PUBLIC_REVIEW WACT-AKL-001-001",
+                "Bob",
+                "n",
+                "5",
+                "Great",
+                "DISPLAY_METRICS");
+        Assert.assertTrue(
+            report, report.contains("Batch line 3 failed: java.lang.NumberFormatException"));
+        Assert.assertTrue(
+            report, report.contains("Batch complete: 5 commands (1 failed) from 13 lines"));
+        assertContains("Public review 'WACT-AKL-001-001-R1' added successfully");
+        assertContains("Errors: COMMAND_NOT_FOUND=0 WRONG_ARGUMENT_COUNT=0 FAILED=1");
+      }
+
+      /**
+       * Runs lines of input as a batch against a new system.
+       *
+       * @param lines the lines of the batch input
+       * @return what the batch wrote to the error stream
+       */
+      private String runBatch(String... lines) {
+        inputs.add(lines);
+        PrintStream origErr = System.err;
+        ByteArrayOutputStream captureErr = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captureErr));
+        try {
+          String input = String.join(NEW_LINE, lines) + NEW_LINE;
+          new Main(new BufferedReader(new StringReader(input)), new OperatorManagementSystem())
+              .startBatch();
+        } finally {
+          System.setErr(origErr);
+        }
+        return captureErr.toString();
+      }
     }
   }
 
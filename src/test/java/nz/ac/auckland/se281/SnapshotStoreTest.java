@@ -0,0 +1,228 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SnapshotStoreTest {
+
+  @Rule public final DiscardOutput discardOutput = new DiscardOutput();
+
+  private Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("snapshot-test");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    deleteRecursively(dir);
+  }
+
+  @Test
+  public void S_01_save_and_load_keeps_every_review_kind() throws IOException {
+    OperatorManagementSystem system = createReviewedSystem();
+    Path file = dir.resolve("oms.snapshot");
+
+    SnapshotStore.save(system, file);
+    OperatorManagementSystem loaded = SnapshotStore.load(file);
+
+    String saved = dump(system);
+    Assert.assertTrue(saved, saved.contains("|endorsed=true"));
+    Assert.assertTrue(saved, saved.contains("|followUp=true|resolved=true|We added shade"));
+    Assert.assertTrue(saved, saved.contains("|followUp=false|resolved=false"));
+    Assert.assertTrue(saved, saved.contains("|recommended=true|[camel.png, beach.jpg]"));
+    Assert.assertEquals(saved, dump(loaded));
+    Assert.assertEquals(0, SnapshotStore.readLogGeneration(file));
+  }
+
+  @Test
+  public void S_02_loaded_system_continues_numbering_ids() throws IOException {
+    Path file = dir.resolve("oms.snapshot");
+    SnapshotStore.save(createReviewedSystem(), file);
+    OperatorManagementSystem loaded = SnapshotStore.load(file);
+
+    loaded.createOperator("Tongariro Trails", "AKL");
+    loaded.createActivity("Night Walk", "Adventure", "WACT-AKL-001");
+    loaded.addPublicReview("WACT-AKL-001-001", new String[] {"Zed", "n", "4", "Again"});
+
+    Assert.assertNotNull(loaded.findOperator("TT-AKL-002"));
+    Assert.assertNotNull(loaded.findActivity("WACT-AKL-001-003"));
+    Assert.assertNotNull(loaded.findReview("WACT-AKL-001-001-R5"));
+  }
+
+  @Test
+  public void S_03_log_generation_is_recorded() throws IOException {
+    Path file = dir.resolve("oms.snapshot");
+
+    SnapshotStore.save(createReviewedSystem(), file, 7);
+
+    Assert.assertEquals(7, SnapshotStore.readLogGeneration(file));
+  }
+
+  @Test
+  public void S_04_bad_magic_number_is_rejected() throws IOException {
+    Path file = dir.resolve("oms.snapshot");
+    Files.write(file, header(0x12345678, 2));
+
+    try {
+      SnapshotStore.load(file);
+      Assert.fail("A file with the wrong magic number was loaded");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Not a snapshot file"));
+    }
+  }
+
+  @Test
+  public void S_05_unknown_version_is_rejected() throws IOException {
+    Path file = dir.resolve("oms.snapshot");
+    Files.write(file, header(0x4f4d5300, 99));
+
+    try {
+      SnapshotStore.load(file);
+      Assert.fail("A snapshot of an unknown version was loaded");
+    } catch (IOException e) {
+      Assert.assertTrue(
+          e.getMessage(), e.getMessage().startsWith("Unsupported snapshot version 99"));
+    }
+    try {
+      SnapshotStore.readLogGeneration(file);
+      Assert.fail("The log generation of an unknown version was read");
+    } catch (IOException expected) {
+      // The header is checked before the generation is trusted
+    }
+  }
+
+  /**
+   * Creates a system holding every kind of review in every state it can be saved in.
+   *
+   * @return the new system
+   */
+  static OperatorManagementSystem createReviewedSystem() {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    addReviewedState(system);
+    return system;
+  }
+
+  /**
+   * Adds two operators, three activities and every kind of review in every state it can be saved
+   * in: endorsed and plain public reviews, resolved and unresolved private reviews, and an expert
+   * review with images. That makes 14 mutations in all.
+   *
+   * @param system the empty system to add to
+   */
+  static void addReviewedState(OperatorManagementSystem system) {
+    system.createOperator("West Auckland Camel Treks", "AKL");
+    system.createOperator("Volcano Bungee Jump", "TUO");
+    system.createActivity("Bethells Beach Camel Trek", "Adventure", "WACT-AKL-001");
+    system.createActivity("Sunset Camel Ride", "Scenic", "WACT-AKL-001");
+    system.createActivity("Crater Leap", "Adventure", "VBJ-TUO-001");
+
+    system.addPublicReview("WACT-AKL-001-001", new String[] {"Alice", "n", "5", "Great \"fun\""});
+    system.addPrivateReview(
+        "WACT-AKL-001-001", new String[] {"Bob", "bob@example.com", "2", "Too hot", "y"});
+    system.addExpertReview("WACT-AKL-001-001", new String[] {"Eve", "4", "Well run", "y"});
+    system.addPrivateReview(
+        "WACT-AKL-001-001", new String[] {"Carol", "carol@example.com", "3", "Fine", "n"});
+    system.addPublicReview("VBJ-TUO-001-001", new String[] {"Dan", "y", "1", "Scary"});
+
+    system.endorseReview("WACT-AKL-001-001-R1");
+    system.resolveReview("WACT-AKL-001-001-R2", "We added shade");
+    system.uploadReviewImage("WACT-AKL-001-001-R3", "camel.png");
+    system.uploadReviewImage("WACT-AKL-001-001-R3", "beach.jpg");
+  }
+
+  /**
+   * Describes every operator, activity and review of a system, with every field that is saved, so
+   * that two systems hold the same state exactly when their dumps are equal.
+   *
+   * @param system the system to describe
+   * @return one line per entity, in creation order
+   */
+  static String dump(OperatorManagementSystem system) {
+    StringBuilder sb = new StringBuilder();
+    for (Operator operator : system.getOperators()) {
+      sb.append(operator.getId())
+          .append('|')
+          .append(operator.getName())
+          .append('|')
+          .append(operator.getLocation())
+          .append('\n');
+
+      for (Activity activity : operator.getActivities()) {
+        sb.append("  ")
+            .append(activity.getId())
+            .append('|')
+            .append(activity.getName())
+            .append('|')
+            .append(activity.getType())
+            .append('\n');
+
+        for (Review review : ((StandardActivity) activity).getReviews()) {
+          sb.append("    ")
+              .append(review.getId())
+              .append('|')
+              .append(review.getType())
+              .append('|')
+              .append(review.getRating())
+              .append('|')
+              .append(review.getAuthor())
+              .append('|')
+              .append(review.getContent());
+          if (review instanceof PublicReview) {
+            sb.append("|endorsed=").append(((PublicReview) review).isEndorsed());
+          } else if (review instanceof PrivateReview) {
+            PrivateReview pr = (PrivateReview) review;
+            sb.append('|')
+                .append(pr.getContact())
+                .append("|followUp=")
+                .append(pr.needsFollowUp())
+                .append("|resolved=")
+                .append(pr.isResolved());
+            if (pr.isResolved()) {
+              sb.append('|').append(pr.getResolution());
+            }
+          } else {
+            ExpertReview er = (ExpertReview) review;
+            sb.append("|recommended=")
+                .append(er.isRecommended())
+                .append('|')
+                .append(er.getImages());
+          }
+          sb.append('\n');
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Deletes a directory and everything in it.
+   *
+   * @param dir the directory to delete
+   * @throws IOException if something cannot be deleted
+   */
+  static void deleteRecursively(Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  private static byte[] header(int magic, int version) {
+    return ByteBuffer.allocate(16).putInt(magic).putInt(version).putLong(0).array();
+  }
+}
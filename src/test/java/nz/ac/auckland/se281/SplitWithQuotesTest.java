@@ -0,0 +1,108 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SplitWithQuotesTest {
+
+  /** The pattern commands were split with before the hand-written tokenizer replaced it. */
+  private static final Pattern WORD = Pattern.compile("('(?:[^']+|'')*'\\S*|\\S+)");
+
+  @Test
+  public void Q_01_runs_of_whitespace_separate_words() {
+    assertSplit(
+        "  CREATE_OPERATOR \t 'West  Auckland\tCamel Treks'\r\n   AKL  ",
+        "CREATE_OPERATOR",
+        "West  Auckland\tCamel Treks",
+        "AKL");
+    assertSplit("");
+    assertSplit(" \t\f\u000B ");
+  }
+
+  @Test
+  public void Q_02_empty_quoted_words_are_kept() {
+    assertSplit("RESOLVE_REVIEW '' ''", "RESOLVE_REVIEW", "", "");
+    assertSplit("''", "");
+    assertSplit("a '' b", "a", "", "b");
+  }
+
+  @Test
+  public void Q_03_doubled_quotes_stay_inside_the_word() {
+    assertSplit("'It''s a trek' AKL", "It''s a trek", "AKL");
+    assertSplit("'a''b''c'", "a''b''c");
+    assertSplit("''''", "''");
+    assertSplit("'a' 'b'", "a", "b");
+
+    // Text attached after the closing quote belongs to the word, which then keeps its quotes
+    assertSplit("'Camel Treks'-AKL next", "'Camel Treks'-AKL", "next");
+  }
+
+  @Test
+  public void Q_04_unterminated_quotes_fall_back_to_whitespace() {
+    assertSplit("'West Auckland", "'West", "Auckland");
+    assertSplit("CREATE_OPERATOR 'West", "CREATE_OPERATOR", "'West");
+
+    // An unclosed word ends at the last doubled quote, as the regular expression backtracked to
+    assertSplit("'It''s open", "'It''s", "open");
+    assertSplit("'a'' b''c d", "'a'' b''c", "d");
+
+    // A lone quote is a word of its own rather than an empty quoted word
+    assertSplit("'", "'");
+    assertSplit("a ' b", "a", "'", "b");
+  }
+
+  @Test
+  public void Q_05_words_match_the_regular_expression_it_replaced() {
+    String[] inputs = {
+      "SEARCH_OPERATORS *",
+      "  CREATE_OPERATOR   'West Auckland Camel Treks'\t'AKL'  ",
+      "'' '' ''",
+      "'''' '''''' x''y",
+      "'a''b' c'd' 'e'f'g",
+      "'unterminated quote",
+      "'un''terminated'' doubled quotes",
+      "'mixed'' ''closed' and 'open",
+      "tabs\tand\u000Bvertical\ftabs\r\n"
+    };
+    for (String input : inputs) {
+      Assert.assertArrayEquals(input, splitWithPattern(input), Main.splitWithQuotes(input));
+    }
+  }
+
+  /**
+   * Asserts that a command line splits into the given words.
+   *
+   * @param input the command line
+   * @param expected the words it should split into
+   */
+  private static void assertSplit(String input, String... expected) {
+    Assert.assertArrayEquals(input, expected, Main.splitWithQuotes(input));
+  }
+
+  /**
+   * Splits a command line the way it was split with {@link #WORD}, including stripping the quotes
+   * around a quoted word.
+   *
+   * @param input the command line
+   * @return the words
+   */
+  private static String[] splitWithPattern(String input) {
+    List<String> items = new ArrayList<>();
+    Matcher matcher = WORD.matcher(input);
+    while (matcher.find()) {
+      String matched = matcher.group(1);
+      if (matched.length() > 1 && matched.startsWith("'") && matched.endsWith("'")) {
+        matched = matched.substring(1, matched.length() - 1);
+      }
+      items.add(matched);
+    }
+    return items.toArray(new String[0]);
+  }
+}
@@ -0,0 +1,432 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import nz.ac.auckland.se281.Types.ReviewType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class WriteAheadLogTest {
+
+  @Rule public final DiscardOutput discardOutput = new DiscardOutput();
+
+  private Path dir;
+  private Path logFile;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("wal-test");
+    logFile = dir.resolve("oms.wal");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    SnapshotStoreTest.deleteRecursively(dir);
+  }
+
+  @Test
+  public void W_01_replay_after_crash_rebuilds_identical_state() throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    WriteAheadLog log = open(system, 1);
+    SnapshotStoreTest.addReviewedState(system);
+
+    // Crash: the log is never synced or closed, so only records already forced to disk survive
+    OperatorManagementSystem recovered = new OperatorManagementSystem();
+    WriteAheadLog reopened = WriteAheadLog.open(logFile, 1);
+    try {
+      Assert.assertEquals(14, reopened.recover(recovered, 0));
+      Assert.assertEquals(SnapshotStoreTest.dump(system), SnapshotStoreTest.dump(recovered));
+    } finally {
+      reopened.close();
+      log.close();
+    }
+  }
+
+  @Test
+  public void W_02_replayed_system_continues_numbering_ids() throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    WriteAheadLog log = open(system, 1);
+    SnapshotStoreTest.addReviewedState(system);
+    log.close();
+
+    OperatorManagementSystem recovered = new OperatorManagementSystem();
+    log = open(recovered, 1);
+    recovered.createOperator("Tongariro Trails", "AKL");
+    recovered.addPublicReview("WACT-AKL-001-001", new String[] {"Zed", "n", "4", "Again"});
+    log.close();
+
+    Assert.assertNotNull(recovered.findOperator("TT-AKL-002"));
+    Assert.assertNotNull(recovered.findReview("WACT-AKL-001-001-R5"));
+
+    // The records appended after recovery replay as well
+    OperatorManagementSystem again = new OperatorManagementSystem();
+    open(again, 1).close();
+    Assert.assertEquals(SnapshotStoreTest.dump(recovered), SnapshotStoreTest.dump(again));
+  }
+
+  @Test
+  public void W_03_torn_tail_record_is_truncated() throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    open(system, 1);
+    SnapshotStoreTest.addReviewedState(system);
+    system.getWriteAheadLog().close();
+    long intactSize = Files.size(logFile);
+
+    // A review record cut off part way through its activity ID, as a crash mid-write leaves it
+    try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.wrap(new byte[] {2, 16, 'W', 'A', 'C', 'T'}));
+    }
+
+    OperatorManagementSystem recovered = new OperatorManagementSystem();
+    WriteAheadLog log = WriteAheadLog.open(logFile, 1);
+    Assert.assertEquals(14, log.recover(recovered, 0));
+    Assert.assertEquals(intactSize, Files.size(logFile));
+    Assert.assertEquals(SnapshotStoreTest.dump(system), SnapshotStoreTest.dump(recovered));
+
+    // Appending resumes where the intact records end
+    recovered.setWriteAheadLog(log);
+    recovered.createOperator("Tongariro Trails", "AKL");
+    log.close();
+
+    OperatorManagementSystem again = new OperatorManagementSystem();
+    WriteAheadLog reopened = WriteAheadLog.open(logFile, 1);
+    Assert.assertEquals(15, reopened.recover(again, 0));
+    reopened.close();
+    Assert.assertNotNull(again.findOperator("TT-AKL-002"));
+  }
+
+  @Test
+  public void W_04_log_covered_by_snapshot_is_not_replayed() throws IOException {
+    Path snapshotFile = dir.resolve("oms.snapshot");
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    WriteAheadLog log = open(system, 1);
+    SnapshotStoreTest.addReviewedState(system);
+    system.checkpoint(snapshotFile);
+    log.close();
+
+    // The checkpoint emptied the log, so replaying it over the snapshot adds nothing twice
+    OperatorManagementSystem loaded = SnapshotStore.load(snapshotFile);
+    WriteAheadLog reopened = WriteAheadLog.open(logFile, 1);
+    Assert.assertEquals(0, reopened.recover(loaded, SnapshotStore.readLogGeneration(snapshotFile)));
+    reopened.close();
+    Assert.assertEquals(SnapshotStoreTest.dump(system), SnapshotStoreTest.dump(loaded));
+  }
+
+  @Test
+  public void W_05_failed_review_write_adds_nothing() throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    WriteAheadLog log = open(system, 1);
+    system.createOperator("West Auckland Camel Treks", "AKL");
+    system.createActivity("Bethells Beach Camel Trek", "Adventure", "WACT-AKL-001");
+    system.addPublicReview("WACT-AKL-001-001", new String[] {"Alice", "n", "5", "Great"});
+
+    // With the file gone, the record cannot be forced to disk
+    log.close();
+    try {
+      system.addPublicReview("WACT-AKL-001-001", new String[] {"Bob", "n", "1", "Lost"});
+      Assert.fail("A review was added although its record could not be written");
+    } catch (UncheckedIOException expected) {
+      // The command fails without touching the activity
+    }
+
+    StandardActivity activity = system.findActivity("WACT-AKL-001-001");
+    Assert.assertEquals(1, activity.getReviewCount());
+    Assert.assertEquals(1, activity.getReviewCount(ReviewType.PUBLIC));
+    Assert.assertEquals(5.0, activity.getAverageRating(), 0.0);
+
+    // The failed review used up no number, and later reviews are not held back behind it
+    system.setWriteAheadLog(null);
+    system.addPublicReview("WACT-AKL-001-001", new String[] {"Carol", "n", "3", "Fine"});
+    Assert.assertEquals(2, activity.getReviews().size());
+    Assert.assertEquals("WACT-AKL-001-001-R2", activity.getReview(1).getId());
+    Assert.assertEquals(2, activity.getReviewCount(ReviewType.PUBLIC));
+    Assert.assertEquals(4.0, activity.getAverageRating(), 0.0);
+  }
+
+  @Test
+  public void W_06_read_only_replay_leaves_the_log_untouched() throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    open(system, 1);
+    SnapshotStoreTest.addReviewedState(system);
+    system.getWriteAheadLog().close();
+    try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.wrap(new byte[] {2, 16, 'W', 'A', 'C', 'T'}));
+    }
+    byte[] logged = Files.readAllBytes(logFile);
+
+    // The torn tail is skipped but not truncated, and nothing else is written either
+    OperatorManagementSystem replayed = new OperatorManagementSystem();
+    Assert.assertEquals(14, WriteAheadLog.replay(logFile, replayed, 0));
+    Assert.assertEquals(SnapshotStoreTest.dump(system), SnapshotStoreTest.dump(replayed));
+    Assert.assertArrayEquals(logged, Files.readAllBytes(logFile));
+    Assert.assertNull(replayed.getWriteAheadLog());
+
+    // A log covered by the snapshot is neither replayed nor replaced
+    Assert.assertEquals(0, WriteAheadLog.replay(logFile, new OperatorManagementSystem(), 1));
+    Assert.assertArrayEquals(logged, Files.readAllBytes(logFile));
+
+    // A missing log is not created
+    Path missing = dir.resolve("missing.wal");
+    Assert.assertEquals(0, WriteAheadLog.replay(missing, new OperatorManagementSystem(), 0));
+    Assert.assertFalse(Files.exists(missing));
+  }
+
+  @Test
+  public void W_07_failed_review_records_are_rolled_back() throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    FailingChannel channel = openFailing(system);
+    system.createOperator("West Auckland Camel Treks", "AKL");
+    system.createActivity("Bethells Beach Camel Trek", "Adventure", "WACT-AKL-001");
+    system.addPublicReview("WACT-AKL-001-001", new String[] {"Alice", "n", "5", "Great"});
+    long intactSize = Files.size(logFile);
+
+    // One record is cut off part way through its write, the next is written but never forced
+    channel.failNextWrite = true;
+    try {
+      system.addPublicReview("WACT-AKL-001-001", new String[] {"Bob", "n", "1", "Torn"});
+      Assert.fail("A review was added although its record was cut off");
+    } catch (UncheckedIOException expected) {
+      // Rolled back
+    }
+    channel.failNextForce = true;
+    try {
+      system.addExpertReview("WACT-AKL-001-001", new String[] {"Eve", "2", "Unforced", "n"});
+      Assert.fail("A review was added although its record could not be forced");
+    } catch (UncheckedIOException expected) {
+      // Rolled back
+    }
+    Assert.assertEquals(intactSize, Files.size(logFile));
+
+    // The log carries on, and the next review takes the number the failed ones did not use
+    system.addPublicReview("WACT-AKL-001-001", new String[] {"Carol", "n", "3", "Fine"});
+    system.getWriteAheadLog().close();
+
+    OperatorManagementSystem recovered = new OperatorManagementSystem();
+    WriteAheadLog reopened = WriteAheadLog.open(logFile, 1);
+    Assert.assertEquals(4, reopened.recover(recovered, 0));
+    reopened.close();
+    Assert.assertEquals(SnapshotStoreTest.dump(system), SnapshotStoreTest.dump(recovered));
+    List<Review> reviews = recovered.findActivity("WACT-AKL-001-001").getReviews();
+    Assert.assertEquals(2, reviews.size());
+    Assert.assertEquals("WACT-AKL-001-001-R2", reviews.get(1).getId());
+    Assert.assertEquals("Carol", reviews.get(1).getAuthor());
+  }
+
+  @Test
+  public void W_08_failed_operator_and_activity_records_are_rolled_back() throws IOException {
+    OperatorManagementSystem system = new OperatorManagementSystem();
+    FailingChannel channel = openFailing(system);
+    system.createOperator("West Auckland Camel Treks", "AKL");
+
+    channel.failNextForce = true;
+    try {
+      system.createOperator("Tongariro Trails", "AKL");
+      Assert.fail("An operator was created although its record could not be forced");
+    } catch (UncheckedIOException expected) {
+      // Rolled back
+    }
+    channel.failNextWrite = true;
+    try {
+      system.createActivity("Bethells Beach Camel Trek", "Adventure", "WACT-AKL-001");
+      Assert.fail("An activity was created although its record was cut off");
+    } catch (UncheckedIOException expected) {
+      // Rolled back
+    }
+    Assert.assertNull(system.findOperator("TT-AKL-002"));
+    Assert.assertEquals(1, system.getOperators().size());
+
+    // Neither the name nor the numbers of the failed records are taken
+    system.createOperator("Tongariro Trails", "AKL");
+    system.createActivity("Bethells Beach Camel Trek", "Adventure", "WACT-AKL-001");
+    system.addPublicReview("WACT-AKL-001-001", new String[] {"Alice", "n", "5", "Great"});
+    channel.failNextForce = true;
+    try {
+      system.endorseReview("WACT-AKL-001-001-R1");
+      Assert.fail("A review was endorsed although its record could not be forced");
+    } catch (UncheckedIOException expected) {
+      // Rolled back
+    }
+    Assert.assertFalse(((PublicReview) system.findReview("WACT-AKL-001-001-R1")).isEndorsed());
+    system.getWriteAheadLog().close();
+
+    OperatorManagementSystem recovered = new OperatorManagementSystem();
+    WriteAheadLog reopened = WriteAheadLog.open(logFile, 1);
+    Assert.assertEquals(4, reopened.recover(recovered, 0));
+    reopened.close();
+    Assert.assertEquals(SnapshotStoreTest.dump(system), SnapshotStoreTest.dump(recovered));
+    Assert.assertEquals(2, recovered.getOperators().size());
+    Assert.assertEquals("TT-AKL-002", recovered.getOperators().get(1).getId());
+    Assert.assertEquals(1, recovered.findOperator("WACT-AKL-001").getActivities().size());
+  }
+
+  /**
+   * Opens the test log over a channel that fails on demand, replays it into a system and attaches
+   * it.
+   *
+   * @param system the system to replay into
+   * @return the channel, to arm its failures
+   * @throws IOException if the log cannot be opened or replayed
+   */
+  private FailingChannel openFailing(OperatorManagementSystem system) throws IOException {
+    FailingChannel channel =
+        new FailingChannel(
+            FileChannel.open(
+                logFile,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    WriteAheadLog log = new WriteAheadLog(logFile, channel, 1);
+    log.recover(system, 0);
+    system.setWriteAheadLog(log);
+    return channel;
+  }
+
+  /**
+   * Opens the test log, replays it into a system and attaches it so that the system's mutations
+   * are logged from then on.
+   *
+   * @param system the system to replay into
+   * @param syncEvery the number of records to collect before forcing them to disk
+   * @return the attached log
+   * @throws IOException if the log cannot be opened or replayed
+   */
+  private WriteAheadLog open(OperatorManagementSystem system, int syncEvery) throws IOException {
+    WriteAheadLog log = WriteAheadLog.open(logFile, syncEvery);
+    log.recover(system, 0);
+    system.setWriteAheadLog(log);
+    return log;
+  }
+
+  /**
+   * File channel that fails the next write or force once asked to, like a disk that fills up or a
+   * device that reports an error. A failing write first passes on half of its bytes, leaving a
+   * record cut off in the file.
+   */
+  private static class FailingChannel extends FileChannel {
+
+    private final FileChannel channel;
+
+    boolean failNextWrite;
+    boolean failNextForce;
+
+    FailingChannel(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      if (failNextWrite) {
+        failNextWrite = false;
+        ByteBuffer half = src.duplicate();
+        half.limit(src.position() + src.remaining() / 2);
+        src.position(src.position() + channel.write(half));
+        throw new IOException("No space left on device");
+      }
+      return channel.write(src);
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+      if (failNextForce) {
+        failNextForce = false;
+        throw new IOException("Input/output error");
+      }
+      channel.force(metaData);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      return channel.read(dst);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+      return channel.read(dsts, offset, length);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+      return channel.write(srcs, offset, length);
+    }
+
+    @Override
+    public long position() throws IOException {
+      return channel.position();
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+      channel.position(newPosition);
+      return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+      return channel.size();
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+      channel.truncate(size);
+      return this;
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target)
+        throws IOException {
+      return channel.transferTo(position, count, target);
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count)
+        throws IOException {
+      return channel.transferFrom(src, position, count);
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+      return channel.read(dst, position);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+      return channel.write(src, position);
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+      return channel.map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+      return channel.lock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+      return channel.tryLock(position, size, shared);
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+      channel.close();
+    }
+  }
+}